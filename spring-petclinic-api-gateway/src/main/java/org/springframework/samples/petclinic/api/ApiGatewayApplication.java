@@ -17,11 +17,13 @@ package org.springframework.samples.petclinic.api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.netflix.zuul.EnableZuulProxy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
 import org.springframework.samples.petclinic.opencensus.OpenCensusService;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.client.RestTemplate;
@@ -37,6 +39,7 @@ import java.util.List;
 @EnableZuulProxy
 @EnableDiscoveryClient
 @SpringBootApplication
+@EnableConfigurationProperties(GatewayProperties.class)
 public class ApiGatewayApplication {
 
     public static void main(String[] args) throws UnknownHostException {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import java.util.function.LongSupplier;
+
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+
+/**
+ * Count-based circuit breaker. The circuit opens once the failure rate over the last calls reaches the
+ * threshold, rejects all calls while open and after the open duration lets a single trial call through,
+ * whose outcome closes or re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int minimumCalls;
+
+    private final int failureRateThreshold;
+
+    private final long openDuration;
+
+    private final LongSupplier clock;
+
+    private final boolean[] window;
+
+    private int next;
+
+    private int calls;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean trialInFlight;
+
+    public CircuitBreaker(final GatewayProperties.Dependency config) {
+        this(config, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(final GatewayProperties.Dependency config, final LongSupplier clock) {
+        this.minimumCalls = Math.min(config.getMinimumCalls(), config.getSlidingWindowSize());
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.openDuration = config.getOpenDuration();
+        this.clock = clock;
+        this.window = new boolean[config.getSlidingWindowSize()];
+    }
+
+    /**
+     * Every permitted call must be followed by {@link #onSuccess}, {@link #onFailure} or {@link #releasePermission}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDuration) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back a permission whose call did not reach the service, without recording an outcome.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures * 100 >= failureRateThreshold * calls) {
+                open();
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(final boolean failure) {
+        if (calls == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        trialInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
@@ -18,10 +18,16 @@ package org.springframework.samples.petclinic.api.application;
 import io.opencensus.common.Scope;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
 import org.springframework.samples.petclinic.opencensus.OpenCensusService;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.samples.petclinic.api.application.TracedAsyncCalls.traced;
+
 /**
  * @author Maciej Szarlinski
  */
@@ -31,6 +37,10 @@ public class CustomersServiceClient {
 
     private final RestTemplate loadBalancedRestTemplate;
 
+    private final AsyncRestTemplate loadBalancedAsyncRestTemplate;
+
+    private final HedgedRequests hedgedRequests;
+
     public OwnerDetails getOwner(final int ownerId) {
         try(Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("CustomersServiceClient.getOwner").startScopedSpan()) {
             OwnerDetails returnOwnerDetails = loadBalancedRestTemplate.getForObject("http://customers-service/owners/{ownerId}", OwnerDetails.class, ownerId);
@@ -38,4 +48,36 @@ public class CustomersServiceClient {
             return returnOwnerDetails;
         }
     }
+
+    public CompletableFuture<OwnerDetails> getOwnerNonBlocking(final int ownerId) {
+        return traced("CustomersServiceClient.getOwner",
+            () -> loadBalancedAsyncRestTemplate.getForEntity("http://customers-service/owners/{ownerId}", OwnerDetails.class, ownerId))
+            .thenApply(HttpEntity::getBody);
+    }
+
+    public byte[] getOwnerJson(final int ownerId) {
+        try(Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("CustomersServiceClient.getOwner").startScopedSpan()) {
+            return loadBalancedRestTemplate.getForObject("http://customers-service/owners/{ownerId}", byte[].class, ownerId);
+        }
+    }
+
+    public CompletableFuture<byte[]> getOwnerJsonNonBlocking(final int ownerId) {
+        return traced("CustomersServiceClient.getOwner",
+            () -> loadBalancedAsyncRestTemplate.getForEntity("http://customers-service/owners/{ownerId}", byte[].class, ownerId))
+            .thenApply(HttpEntity::getBody);
+    }
+
+    public CompletableFuture<byte[]> getOwnerJsonHedged(final int ownerId) {
+        return hedgedRequests.getForObject("customers-service", "CustomersServiceClient.getOwner",
+            "/owners/{ownerId}", byte[].class, ownerId);
+    }
+
+    public boolean isHedged() {
+        return hedgedRequests.isEnabled("customers-service");
+    }
+
+    public CompletableFuture<OwnerDetails> getOwnerHedged(final int ownerId) {
+        return hedgedRequests.getForObject("customers-service", "CustomersServiceClient.getOwner",
+            "/owners/{ownerId}", OwnerDetails.class, ownerId);
+    }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown instead of calling a downstream service whose bulkhead is full or whose circuit is open.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DependencyUnavailableException extends RuntimeException {
+
+    public DependencyUnavailableException(final String dependency, final String reason) {
+        super(dependency + " is unavailable: " + reason);
+    }
+}
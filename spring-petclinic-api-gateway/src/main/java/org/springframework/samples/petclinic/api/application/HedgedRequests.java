@@ -0,0 +1,319 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.springframework.samples.petclinic.api.application.TracedAsyncCalls.traced;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.samples.petclinic.api.infrastructure.config.RevalidatingInterceptor;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.samples.petclinic.opencensus.TracingAsyncInterceptor;
+import org.springframework.samples.petclinic.opencensus.TracingInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerContext;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+import io.grpc.Context;
+import io.opencensus.common.Scope;
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Hedged reads: a request that has not been answered within a percentile of the latency recently observed
+ * for its service is sent a second time, to a different instance chosen by the service's Ribbon load balancer,
+ * and whichever response arrives first is used. The number of hedges is capped by a budget that grows with
+ * every primary request, so hedging adds at most {@code budgetRatio} of extra load.
+ * <p>
+ * Instances are chosen here rather than by the {@code @LoadBalanced} templates, so the Ribbon server
+ * statistics are updated explicitly. The losing request is not cancelled, its connection returns to the pool.
+ */
+@Component
+public class HedgedRequests {
+
+    private static final TagKey KEY_SERVICE = TagKey.create("service");
+
+    private static final Measure.MeasureLong HEDGES = OpenCensusService.getInstance()
+        .registerCounter("hedged_requests", "Duplicate requests sent to a second instance", "1", KEY_SERVICE);
+
+    private static final Measure.MeasureLong HEDGE_WINS = OpenCensusService.getInstance()
+        .registerCounter("hedged_requests_won", "Duplicate requests that answered before the original", "1", KEY_SERVICE);
+
+    private static final Measure.MeasureLong OVER_BUDGET = OpenCensusService.getInstance()
+        .registerCounter("hedged_requests_over_budget", "Duplicate requests skipped because the hedge budget was spent", "1", KEY_SERVICE);
+
+    private final GatewayProperties.Hedging config;
+
+    private final boolean nonBlocking;
+
+    private final SpringClientFactory clientFactory;
+
+    private final RestTemplate restTemplate;
+
+    private final AsyncRestTemplate asyncRestTemplate;
+
+    private final ThreadPoolTaskExecutor gatewayExecutor;
+
+    private final ScheduledExecutorService gatewayTimeoutScheduler;
+
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HedgedRequests(GatewayProperties properties, SpringClientFactory clientFactory,
+                          HttpComponentsClientHttpRequestFactory gatewayRequestFactory, CloseableHttpAsyncClient gatewayAsyncHttpClient,
+                          ThreadPoolTaskExecutor gatewayExecutor, ScheduledExecutorService gatewayTimeoutScheduler,
+                          RevalidatingInterceptor revalidatingInterceptor) {
+        this.config = properties.getHedging();
+        this.nonBlocking = properties.getClient().isNonBlocking();
+        this.clientFactory = clientFactory;
+        this.gatewayExecutor = gatewayExecutor;
+        this.gatewayTimeoutScheduler = gatewayTimeoutScheduler;
+
+        // not load balanced, the instance is part of the URL already
+        final List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        final List<AsyncClientHttpRequestInterceptor> asyncInterceptors = new ArrayList<>();
+        interceptors.add(new TracingInterceptor());
+        asyncInterceptors.add(new TracingAsyncInterceptor());
+        if (properties.getRevalidation().isEnabled()) {
+            interceptors.add(revalidatingInterceptor);
+            asyncInterceptors.add(revalidatingInterceptor);
+        }
+        this.restTemplate = new RestTemplate(gatewayRequestFactory);
+        this.restTemplate.setInterceptors(interceptors);
+        this.asyncRestTemplate = new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(gatewayAsyncHttpClient));
+        this.asyncRestTemplate.setInterceptors(asyncInterceptors);
+    }
+
+    public boolean isEnabled(final String serviceId) {
+        return config.getServices().contains(serviceId);
+    }
+
+    /**
+     * @param path the request path below the service root, may contain URI template variables
+     */
+    public <T> CompletableFuture<T> getForObject(final String serviceId, final String spanName,
+                                                 final String path, final Class<T> type, final Object... uriVariables) {
+        final ILoadBalancer loadBalancer = clientFactory.getLoadBalancer(serviceId);
+        final Server primary = loadBalancer.chooseServer("default");
+        if (primary == null) {
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("No instances available for " + serviceId));
+            return failed;
+        }
+        final LatencyWindow latency = latencies.computeIfAbsent(serviceId, id -> new LatencyWindow(config.getLatencyWindow()));
+        final Budget budget = budgets.computeIfAbsent(serviceId, id -> new Budget(config.getBudgetRatio(), config.getMaxBurst()));
+        budget.deposit();
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        send(serviceId, primary, spanName, path, type, uriVariables)
+            .whenComplete((value, failure) -> settle(result, pending, value, failure));
+
+        final long delay = latency.percentile(config.getPercentile(), config.getMinSamples());
+        if (delay < 0) {
+            return result;
+        }
+        final Context context = Context.current();
+        final ScheduledFuture<?> timer = gatewayTimeoutScheduler.schedule(context.wrap(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            final Server other = chooseOther(loadBalancer, primary);
+            if (other == null) {
+                return;
+            }
+            if (!budget.tryWithdraw()) {
+                OpenCensusService.getInstance().record(OVER_BUDGET, 1, KEY_SERVICE, serviceId);
+                return;
+            }
+            OpenCensusService.getInstance().record(HEDGES, 1, KEY_SERVICE, serviceId);
+            pending.incrementAndGet();
+            final CompletableFuture<T> hedge;
+            try {
+                hedge = send(serviceId, other, spanName, path, type, uriVariables);
+            } catch (RuntimeException e) {
+                // e.g. a saturated gateway executor, the hedge counts as failed so a failed primary still settles
+                settle(result, pending, null, e);
+                return;
+            }
+            hedge.whenComplete((value, failure) -> {
+                if (settle(result, pending, value, failure) && failure == null) {
+                    OpenCensusService.getInstance().record(HEDGE_WINS, 1, KEY_SERVICE, serviceId);
+                }
+            });
+        }), Math.max(delay, config.getMinDelay()), MILLISECONDS);
+        result.whenComplete((value, failure) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * The first response wins, a failure only counts once no other request is pending.
+     *
+     * @return whether this attempt completed the result
+     */
+    private static <T> boolean settle(final CompletableFuture<T> result, final AtomicInteger pending, final T value, final Throwable failure) {
+        final boolean last = pending.decrementAndGet() == 0;
+        if (failure == null) {
+            return result.complete(value);
+        }
+        return last && result.completeExceptionally(failure);
+    }
+
+    private Server chooseOther(final ILoadBalancer loadBalancer, final Server primary) {
+        if (loadBalancer.getReachableServers().size() < 2) {
+            return null;
+        }
+        for (int attempt = 0; attempt < 3; attempt++) {
+            final Server server = loadBalancer.chooseServer("default");
+            if (server != null && !server.getHostPort().equals(primary.getHostPort())) {
+                return server;
+            }
+        }
+        return null;
+    }
+
+    private <T> CompletableFuture<T> send(final String serviceId, final Server server, final String spanName,
+                                          final String path, final Class<T> type, final Object... uriVariables) {
+        final String url = "http://" + server.getHostPort() + path;
+        final LoadBalancerContext loadBalancerContext = clientFactory.getLoadBalancerContext(serviceId);
+        final ServerStats stats = loadBalancerContext.getServerStats(server);
+        final LatencyWindow latency = latencies.get(serviceId);
+
+        final CompletableFuture<T> response;
+        if (nonBlocking) {
+            loadBalancerContext.noteOpenConnection(stats);
+            final long start = System.currentTimeMillis();
+            response = traced(spanName, () -> asyncRestTemplate.getForEntity(url, type, uriVariables))
+                .thenApply(HttpEntity::getBody);
+            return response.whenComplete((value, failure) -> completed(loadBalancerContext, stats, latency, start, value, failure));
+        }
+        response = CompletableFuture.supplyAsync(() -> {
+            loadBalancerContext.noteOpenConnection(stats);
+            final long start = System.currentTimeMillis();
+            T value = null;
+            RuntimeException failure = null;
+            try (Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder(spanName).startScopedSpan()) {
+                value = restTemplate.getForObject(url, type, uriVariables);
+                return value;
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                completed(loadBalancerContext, stats, latency, start, value, failure);
+            }
+        }, gatewayExecutor);
+        return response;
+    }
+
+    private static void completed(final LoadBalancerContext loadBalancerContext, final ServerStats stats, final LatencyWindow latency,
+                                  final long start, final Object value, final Throwable failure) {
+        final long duration = System.currentTimeMillis() - start;
+        loadBalancerContext.noteRequestCompletion(stats, value, failure, duration, null);
+        if (failure == null) {
+            latency.record(duration);
+        }
+    }
+
+    /**
+     * Latencies of the most recent successful requests to one service.
+     */
+    static class LatencyWindow {
+
+        private final long[] samples;
+
+        private int next;
+
+        private int count;
+
+        LatencyWindow(final int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(final long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return the percentile in milliseconds, or -1 while fewer than {@code minSamples} were recorded
+         */
+        synchronized long percentile(final double percentile, final int minSamples) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            final long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+    }
+
+    /**
+     * Token bucket refilled by primary requests: each one adds {@code ratio} tokens, each hedge takes one.
+     */
+    static class Budget {
+
+        private final double ratio;
+
+        private final double capacity;
+
+        private double tokens;
+
+        Budget(final double ratio, final int maxBurst) {
+            this.ratio = ratio;
+            this.capacity = maxBurst;
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(capacity, tokens + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
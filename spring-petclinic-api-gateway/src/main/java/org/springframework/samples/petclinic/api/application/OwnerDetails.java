@@ -43,6 +43,11 @@ public class OwnerDetails {
 
     private final List<PetDetails> pets = new ArrayList<>();
 
+    /**
+     * Set when visits-service could not be reached and the pets come without their visits.
+     */
+    private boolean visitsOmitted;
+
     @JsonIgnore
     public List<Integer> getPetIds() {
         return pets.stream()
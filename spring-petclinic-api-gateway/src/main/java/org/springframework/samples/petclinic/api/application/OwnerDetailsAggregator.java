@@ -0,0 +1,266 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import io.grpc.Context;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Assembles {@link OwnerDetails} from customers-service and visits-service. Remote calls either run on the
+ * gateway executor or, in non-blocking mode, through the {@code AsyncRestTemplate}. Each call is bounded by
+ * its own timeout and the whole composition by an overall deadline. Reads of services listed under
+ * {@code gateway.hedging.services} go through {@link HedgedRequests} instead. In streaming mode the responses
+ * are not bound to objects but spliced, see {@link OwnerDetailsJson}. Assembled owners are cached until a
+ * write for the owner passes the gateway, and concurrent cache misses for the same owner share one assembly.
+ * <p>
+ * The visits call is bounded by the smaller of its own timeout and what is left of the overall deadline, so a
+ * slow visits-service degrades the answer instead of failing it.
+ * <p>
+ * Each service is called through its {@link RemoteDependency}. When the visits cannot be loaded the owner is
+ * answered without them and flagged with {@link OwnerDetails#isVisitsOmitted()}; such answers are not cached.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class OwnerDetailsAggregator {
+
+    /**
+     * Left of the overall deadline when the visits call gives up, so that the degraded answer wins the race.
+     */
+    private static final long DEADLINE_RESERVE_MILLIS = 50;
+
+    private final CustomersServiceClient customersServiceClient;
+
+    private final VisitsServiceClient visitsServiceClient;
+
+    private final ThreadPoolTaskExecutor gatewayExecutor;
+
+    private final ScheduledExecutorService gatewayTimeoutScheduler;
+
+    private final OwnerDetailsCache ownerDetailsCache;
+
+    private final RemoteDependencies remoteDependencies;
+
+    private final GatewayProperties properties;
+
+    private final RequestCoalescer<OwnerLoad, OwnerDetails> coalescer = new RequestCoalescer<>("owner_details");
+
+    private final RequestCoalescer<OwnerLoad, OwnerDetailsJson> jsonCoalescer = new RequestCoalescer<>("owner_details_json");
+
+    public CompletableFuture<OwnerDetails> getOwnerDetails(final int ownerId) {
+        return load(ownerId, OwnerDetails.class, coalescer, this::assemble, OwnerDetails::isVisitsOmitted);
+    }
+
+    /**
+     * Streaming variant of {@link #getOwnerDetails}, the responses of both services are spliced instead of bound.
+     */
+    public CompletableFuture<OwnerDetailsJson> getOwnerDetailsJson(final int ownerId) {
+        return load(ownerId, OwnerDetailsJson.class, jsonCoalescer, this::assembleJson, OwnerDetailsJson::isVisitsOmitted);
+    }
+
+    private <T> CompletableFuture<T> load(final int ownerId, final Class<T> type, final RequestCoalescer<OwnerLoad, T> loads,
+                                          final IntFunction<CompletableFuture<T>> assembly, final Predicate<T> visitsOmitted) {
+        final T cached = ownerDetailsCache.get(ownerId, type);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        // loads started before the last invalidation of this owner must not be joined
+        final long generation = ownerDetailsCache.generation(ownerId);
+        return loads.execute(new OwnerLoad(ownerId, generation), () -> assembly.apply(ownerId).thenApply(owner -> {
+            if (!visitsOmitted.test(owner)) {
+                ownerDetailsCache.put(ownerId, owner, generation);
+            }
+            return owner;
+        }));
+    }
+
+    private CompletableFuture<OwnerDetails> assemble(final int ownerId) {
+        // continuations may run on I/O threads, keep them in the request's trace context
+        final Executor inRequestContext = Context.current().fixedContextExecutor(Runnable::run);
+        final long deadline = deadline();
+        final CompletableFuture<OwnerDetails> ownerDetails = getOwner(ownerId)
+            .thenComposeAsync(owner -> getVisitsForPets(owner.getPetIds(), petIds -> getVisitsForBatch(petIds, deadline))
+                .handle((visits, failure) -> failure == null ? supplyVisits(owner, visits) : omitVisits(owner, failure)),
+                inRequestContext);
+        return within("getOwnerDetails", ownerDetails, properties.getTimeouts().getOwnerDetails());
+    }
+
+    private CompletableFuture<OwnerDetailsJson> assembleJson(final int ownerId) {
+        final Executor inRequestContext = Context.current().fixedContextExecutor(Runnable::run);
+        final long deadline = deadline();
+        final CompletableFuture<OwnerDetailsJson> ownerDetails = getOwnerJson(ownerId)
+            .thenComposeAsync(owner -> {
+                final OwnerDetailsJson withoutVisits = OwnerDetailsJson.fromOwner(owner);
+                return getVisitsForPets(withoutVisits.getPetIds(), petIds -> getVisitsJsonForBatch(petIds, deadline))
+                    .handle((visits, failure) -> {
+                        if (failure == null) {
+                            return withoutVisits.withVisits(visits);
+                        }
+                        degrade(ownerId, failure);
+                        return withoutVisits;
+                    });
+            }, inRequestContext);
+        return within("getOwnerDetails", ownerDetails, properties.getTimeouts().getOwnerDetails());
+    }
+
+    private CompletableFuture<OwnerDetails> getOwner(final int ownerId) {
+        return customersServiceCall("CustomersServiceClient.getOwner",
+            () -> customersServiceClient.getOwnerHedged(ownerId),
+            () -> customersServiceClient.getOwnerNonBlocking(ownerId),
+            () -> customersServiceClient.getOwner(ownerId));
+    }
+
+    private CompletableFuture<byte[]> getOwnerJson(final int ownerId) {
+        return customersServiceCall("CustomersServiceClient.getOwner",
+            () -> customersServiceClient.getOwnerJsonHedged(ownerId),
+            () -> customersServiceClient.getOwnerJsonNonBlocking(ownerId),
+            () -> customersServiceClient.getOwnerJson(ownerId));
+    }
+
+    private <V> CompletableFuture<Map<Integer, List<V>>> getVisitsForPets(final List<Integer> petIds,
+                                                                         final Function<List<Integer>, CompletableFuture<Map<Integer, List<V>>>> batchCall) {
+        final int batchSize = properties.getVisits().getBatchSize();
+        final CompletableFuture<Map<Integer, List<V>>>[] batches = new CompletableFuture[(petIds.size() + batchSize - 1) / batchSize];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = batchCall.apply(petIds.subList(i * batchSize, Math.min(petIds.size(), (i + 1) * batchSize)));
+        }
+        return CompletableFuture.allOf(batches).thenApply(done -> {
+            final Map<Integer, List<V>> visits = new HashMap<>();
+            for (CompletableFuture<Map<Integer, List<V>>> batch : batches) {
+                visits.putAll(batch.join());
+            }
+            return visits;
+        });
+    }
+
+    private CompletableFuture<Map<Integer, List<VisitDetails>>> getVisitsForBatch(final List<Integer> petIds, final long deadline) {
+        return visitsServiceCall("VisitsServiceClient.getVisitsForPets", deadline,
+            () -> visitsServiceClient.getVisitsForPetsHedged(petIds),
+            () -> visitsServiceClient.getVisitsForPetsNonBlocking(petIds),
+            () -> visitsServiceClient.getVisitsForPets(petIds));
+    }
+
+    private CompletableFuture<Map<Integer, List<OwnerDetailsJson.VisitSlice>>> getVisitsJsonForBatch(final List<Integer> petIds, final long deadline) {
+        return visitsServiceCall("VisitsServiceClient.getVisitsForPets", deadline,
+            () -> visitsServiceClient.getVisitsJsonForPetsHedged(petIds),
+            () -> visitsServiceClient.getVisitsJsonForPetsNonBlocking(petIds),
+            () -> visitsServiceClient.getVisitsJsonForPets(petIds));
+    }
+
+    private <T> CompletableFuture<T> customersServiceCall(final String name, final Supplier<CompletableFuture<T>> hedged,
+                                                          final Supplier<CompletableFuture<T>> nonBlocking, final Supplier<T> blocking) {
+        final Supplier<CompletableFuture<T>> remoteCall = customersServiceClient.isHedged() ? hedged : start(nonBlocking, blocking);
+        final long timeout = properties.getTimeouts().getCustomersService();
+        return remoteDependencies.getCustomersService().call(remoteCall, call -> within(name, call, timeout));
+    }
+
+    private <T> CompletableFuture<T> visitsServiceCall(final String name, final long deadline, final Supplier<CompletableFuture<T>> hedged,
+                                                       final Supplier<CompletableFuture<T>> nonBlocking, final Supplier<T> blocking) {
+        final Supplier<CompletableFuture<T>> remoteCall = visitsServiceClient.isHedged() ? hedged : start(nonBlocking, blocking);
+        final long timeout = Math.min(properties.getTimeouts().getVisitsService(), remainingMillis(deadline));
+        return remoteDependencies.getVisitsService().call(remoteCall, call -> within(name, call, timeout));
+    }
+
+    /**
+     * The overall deadline of an owner assembly started now, in {@link System#nanoTime()}.
+     */
+    private long deadline() {
+        return System.nanoTime() + MILLISECONDS.toNanos(properties.getTimeouts().getOwnerDetails());
+    }
+
+    private static long remainingMillis(final long deadline) {
+        return Math.max(0, NANOSECONDS.toMillis(deadline - System.nanoTime()) - DEADLINE_RESERVE_MILLIS);
+    }
+
+    private <T> Supplier<CompletableFuture<T>> start(final Supplier<CompletableFuture<T>> nonBlocking, final Supplier<T> blocking) {
+        if (properties.getClient().isNonBlocking()) {
+            return nonBlocking;
+        }
+        return () -> CompletableFuture.supplyAsync(blocking, gatewayExecutor);
+    }
+
+    private OwnerDetails supplyVisits(final OwnerDetails owner, final Map<Integer, List<VisitDetails>> visitsMapping) {
+        owner.getPets().forEach(pet ->
+            pet.getVisits().addAll(Optional.ofNullable(visitsMapping.get(pet.getId())).orElse(emptyList())));
+        return owner;
+    }
+
+    private OwnerDetails omitVisits(final OwnerDetails owner, final Throwable failure) {
+        degrade(owner.getId(), failure);
+        owner.setVisitsOmitted(true);
+        return owner;
+    }
+
+    /**
+     * Rethrows the failure to load the visits unless degraded answers are enabled.
+     */
+    private void degrade(final int ownerId, final Throwable failure) {
+        if (!properties.getResilience().isDegradeVisits()) {
+            throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+        }
+        log.warn("Answering owner {} without visits: {}", ownerId, failure.toString());
+    }
+
+    /**
+     * Completes with {@link DownstreamTimeoutException} unless the given future completes within the timeout.
+     * The underlying call keeps running until its socket timeout, but nobody waits for it anymore.
+     */
+    private <T> CompletableFuture<T> within(final String name, final CompletableFuture<T> future, final long timeoutMillis) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final ScheduledFuture<?> timer = gatewayTimeoutScheduler.schedule(
+            () -> result.completeExceptionally(new DownstreamTimeoutException(name, timeoutMillis)), timeoutMillis, MILLISECONDS);
+        future.whenComplete((value, failure) -> {
+            timer.cancel(false);
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    @Value
+    private static class OwnerLoad {
+        private final int ownerId;
+        private final long generation;
+    }
+}
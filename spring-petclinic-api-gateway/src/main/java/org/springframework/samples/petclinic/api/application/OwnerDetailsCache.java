@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Bounded, TTL-based cache of assembled owner details, {@link OwnerDetails} or, in streaming mode,
+ * {@link OwnerDetailsJson}.
+ * <p>
+ * A load that was started before an invalidation of the same owner must not end up in the cache,
+ * so every invalidation bumps a generation counter and {@link #put} only stores values whose load
+ * started in the current generation.
+ * <p>
+ * A write accepted for later processing has not changed the owner yet when it is routed, so after
+ * {@link #invalidateAfterPendingWrite} the owner is not cached for a while, and invalidated once more when
+ * that window ends.
+ */
+@Component
+public class OwnerDetailsCache {
+
+    private static final TagKey KEY_CAUSE = TagKey.create("cause");
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Measure.MeasureLong hits = OpenCensusService.getInstance()
+        .registerCounter("owner_details_cache_hits", "Owner details served from the cache", "1");
+
+    private final Measure.MeasureLong misses = OpenCensusService.getInstance()
+        .registerCounter("owner_details_cache_misses", "Owner details assembled from remote calls", "1");
+
+    private final Measure.MeasureLong evictions = OpenCensusService.getInstance()
+        .registerCounter("owner_details_cache_evictions", "Owner details evicted by size or age", "1", KEY_CAUSE);
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final boolean enabled;
+
+    private final Cache<Integer, Object> cache;
+
+    private final Cache<Integer, Boolean> pendingWrites;
+
+    @Autowired
+    public OwnerDetailsCache(GatewayProperties properties) {
+        GatewayProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(config.getMaxSize())
+            .expireAfterWrite(config.getTtl(), MILLISECONDS)
+            .removalListener((Integer ownerId, Object owner, RemovalCause cause) -> {
+                if (cause.wasEvicted()) {
+                    OpenCensusService.getInstance().record(evictions, 1, KEY_CAUSE, cause.name().toLowerCase());
+                }
+            })
+            .build();
+        this.pendingWrites = Caffeine.newBuilder()
+            .maximumSize(config.getMaxSize())
+            .expireAfterWrite(config.getPendingWriteWindow(), MILLISECONDS)
+            .removalListener((Integer ownerId, Boolean pending, RemovalCause cause) -> {
+                if (cause.wasEvicted()) {
+                    invalidate(ownerId);
+                }
+            })
+            .build();
+    }
+
+    public <T> T get(final int ownerId, final Class<T> type) {
+        if (!enabled) {
+            return null;
+        }
+        final Object owner = cache.getIfPresent(ownerId);
+        final boolean hit = type.isInstance(owner);
+        OpenCensusService.getInstance().record(hit ? hits : misses, 1);
+        return hit ? type.cast(owner) : null;
+    }
+
+    /**
+     * To be read before the owner details are loaded and passed to {@link #put} afterwards.
+     */
+    public long generation(final int ownerId) {
+        return generations.get(stripe(ownerId));
+    }
+
+    public void put(final int ownerId, final Object owner, final long generation) {
+        if (!enabled || generation(ownerId) != generation || pendingWrites.getIfPresent(ownerId) != null) {
+            return;
+        }
+        cache.put(ownerId, owner);
+        if (generation(ownerId) != generation) {
+            // invalidated while we were storing
+            cache.invalidate(ownerId);
+        }
+    }
+
+    public void invalidate(final int ownerId) {
+        generations.incrementAndGet(stripe(ownerId));
+        cache.invalidate(ownerId);
+    }
+
+    /**
+     * Invalidates the owner after a write that was accepted but may not be committed yet, and keeps it out of
+     * the cache for the pending write window.
+     */
+    public void invalidateAfterPendingWrite(final int ownerId) {
+        pendingWrites.put(ownerId, Boolean.TRUE);
+        invalidate(ownerId);
+    }
+
+    private static int stripe(final int ownerId) {
+        return (ownerId ^ (ownerId >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Owner details assembled without data binding. The customers-service response is parsed once into a buffer of
+ * JSON tokens, collecting the pet ids on the way. Each visit stays a slice of the visits-service response it came
+ * in, which is read once to find the bounds and the pet id of its visits. {@link #writeTo} replays the owner
+ * and splices the visit slices into the pets, producing the same document as a serialized {@link OwnerDetails}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class OwnerDetailsJson {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final TokenBuffer owner;
+
+    @Getter
+    private final List<Integer> petIds;
+
+    private final Map<Integer, List<VisitSlice>> visits;
+
+    @Getter
+    private final boolean visitsOmitted;
+
+    /**
+     * Parses a customers-service owner, the result has its visits omitted until {@link #withVisits} is called.
+     */
+    public static OwnerDetailsJson fromOwner(final byte[] owner) {
+        final List<Integer> petIds = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(owner)) {
+            final TokenBuffer tokens = new TokenBuffer(parser);
+            parser.nextToken();
+            tokens.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("visitsOmitted".equals(field)) {
+                    parser.skipChildren();
+                } else if ("pets".equals(field) && value == JsonToken.START_ARRAY) {
+                    tokens.writeArrayFieldStart(field);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        copyPet(parser, tokens, petIds);
+                    }
+                    tokens.writeEndArray();
+                } else {
+                    tokens.writeFieldName(field);
+                    tokens.copyCurrentStructure(parser);
+                }
+            }
+            tokens.writeEndObject();
+            return new OwnerDetailsJson(tokens, petIds, emptyMap(), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The same owner with the given visits, as returned by {@link #visitsByPet}.
+     */
+    public OwnerDetailsJson withVisits(final Map<Integer, List<VisitSlice>> visits) {
+        return new OwnerDetailsJson(owner, petIds, visits, false);
+    }
+
+    /**
+     * Copies a pet without its visits, if any, the pet id is also added to the pet ids.
+     */
+    private static void copyPet(final JsonParser parser, final TokenBuffer tokens, final List<Integer> petIds) throws IOException {
+        tokens.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("visits".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            if ("id".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                petIds.add(parser.getIntValue());
+            }
+            tokens.writeFieldName(field);
+            tokens.copyCurrentStructure(parser);
+        }
+        tokens.writeEndObject();
+    }
+
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        try (JsonParser parser = owner.asParser()) {
+            parser.nextToken();
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "pets".equals(field)) {
+                    generator.writeArrayFieldStart(field);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        writePet(parser, generator);
+                    }
+                    generator.writeEndArray();
+                } else {
+                    generator.writeFieldName(field);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeBooleanField("visitsOmitted", visitsOmitted);
+            generator.writeEndObject();
+        }
+    }
+
+    private void writePet(final JsonParser parser, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        Integer petId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_NUMBER_INT && "id".equals(field)) {
+                petId = parser.getIntValue();
+            }
+            generator.writeFieldName(field);
+            generator.copyCurrentStructure(parser);
+        }
+        generator.writeArrayFieldStart("visits");
+        for (VisitSlice visit : petId != null ? visits.getOrDefault(petId, emptyList()) : emptyList()) {
+            generator.writeRawValue(visit.toString());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Finds the visits of a visits-service {@code /pets/visits} response, grouped by pet id. Only the pet ids are
+     * read into Java values, each visit is kept as the bytes between its braces.
+     */
+    public static Map<Integer, List<VisitSlice>> visitsByPet(final byte[] visits) {
+        final Map<Integer, List<VisitSlice>> visitsByPet = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(visits)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "items".equals(field)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        // the parser stands right behind the brace of a structural token
+                        final int start = (int) parser.getCurrentLocation().getByteOffset() - 1;
+                        Integer petId = null;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            final String visitField = parser.getCurrentName();
+                            if (parser.nextToken() == JsonToken.VALUE_NUMBER_INT && "petId".equals(visitField)) {
+                                petId = parser.getIntValue();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        final int end = (int) parser.getCurrentLocation().getByteOffset();
+                        if (petId != null) {
+                            visitsByPet.computeIfAbsent(petId, id -> new ArrayList<>()).add(new VisitSlice(visits, start, end - start));
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return visitsByPet;
+    }
+
+    /**
+     * A visit as the bytes of its JSON object within the visits-service response.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class VisitSlice {
+
+        private final byte[] response;
+
+        private final int offset;
+
+        private final int length;
+
+        @Override
+        public String toString() {
+            return new String(response, offset, length, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+
+/**
+ * The downstream services called by the gateway, each behind its own bulkhead and circuit breaker.
+ */
+@Component
+@Getter
+public class RemoteDependencies {
+
+    private final RemoteDependency customersService;
+
+    private final RemoteDependency visitsService;
+
+    @Autowired
+    public RemoteDependencies(GatewayProperties properties) {
+        this.customersService = new RemoteDependency("customers-service", properties.getResilience().getCustomersService());
+        this.visitsService = new RemoteDependency("visits-service", properties.getResilience().getVisitsService());
+    }
+}
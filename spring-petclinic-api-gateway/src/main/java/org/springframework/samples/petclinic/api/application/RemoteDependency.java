@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.web.client.HttpClientErrorException;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Guards the calls to one downstream service with a bulkhead and a {@link CircuitBreaker}, so that a slow or
+ * failing service cannot tie up the gateway's threads and connections needed by the others.
+ * <p>
+ * The bulkhead permit is held until the remote call itself completes, not just until the caller gives up
+ * waiting, so it bounds the threads and connections really busy with the service.
+ */
+public class RemoteDependency {
+
+    private static final TagKey KEY_DEPENDENCY = TagKey.create("dependency");
+
+    private static final Measure.MeasureLong BULKHEAD_REJECTIONS = OpenCensusService.getInstance()
+        .registerCounter("bulkhead_rejections", "Calls rejected because too many calls to the dependency were in flight", "1", KEY_DEPENDENCY);
+
+    private static final Measure.MeasureLong CIRCUIT_BREAKER_REJECTIONS = OpenCensusService.getInstance()
+        .registerCounter("circuit_breaker_rejections", "Calls rejected because the dependency's circuit was open", "1", KEY_DEPENDENCY);
+
+    private static final Measure.MeasureLong CIRCUIT_BREAKER_STATE = OpenCensusService.getInstance()
+        .registerGauge("circuit_breaker_state", "Circuit state of the dependency, 0 closed, 1 open, 2 half-open", "1", KEY_DEPENDENCY);
+
+    private final String name;
+
+    private final Semaphore bulkhead;
+
+    private final CircuitBreaker circuitBreaker;
+
+    public RemoteDependency(final String name, final GatewayProperties.Dependency config) {
+        this.name = name;
+        this.bulkhead = new Semaphore(config.getMaxConcurrentCalls());
+        this.circuitBreaker = new CircuitBreaker(config);
+    }
+
+    /**
+     * @param remoteCall starts the remote call
+     * @param deadline bounds the remote call, its outcome is what the circuit breaker records
+     */
+    public <T> CompletableFuture<T> call(final Supplier<CompletableFuture<T>> remoteCall, final UnaryOperator<CompletableFuture<T>> deadline) {
+        if (!bulkhead.tryAcquire()) {
+            OpenCensusService.getInstance().record(BULKHEAD_REJECTIONS, 1, KEY_DEPENDENCY, name);
+            return failed(new DependencyUnavailableException(name, "too many calls in flight"));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            OpenCensusService.getInstance().record(CIRCUIT_BREAKER_REJECTIONS, 1, KEY_DEPENDENCY, name);
+            return failed(new DependencyUnavailableException(name, "circuit open"));
+        }
+        CompletableFuture<T> call;
+        try {
+            call = remoteCall.get();
+        } catch (RuntimeException e) {
+            call = failed(e);
+        }
+        call.whenComplete((value, failure) -> bulkhead.release());
+        return deadline.apply(call).whenComplete((value, failure) -> {
+            recordOutcome(failure);
+            OpenCensusService.getInstance().record(CIRCUIT_BREAKER_STATE, circuitBreaker.getState().ordinal(), KEY_DEPENDENCY, name);
+        });
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    private void recordOutcome(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure == null || failure instanceof HttpClientErrorException) {
+            // a 4xx answer is a healthy service refusing the request
+            circuitBreaker.onSuccess();
+        } else if (failure instanceof TaskRejectedException) {
+            // the gateway itself was saturated, the service has not been called
+            circuitBreaker.releasePermission();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable failure) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+
+import io.opencensus.stats.Measure;
+
+/**
+ * Single-flight execution: concurrent requests for the same key share one in-flight computation and all
+ * complete with its result or its failure. The key is released as soon as the computation completes,
+ * results are not retained.
+ */
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Measure.MeasureLong coalesced;
+
+    public RequestCoalescer(final String name) {
+        this.coalesced = OpenCensusService.getInstance()
+            .registerCounter(name + "_coalesced", "Requests that joined an in-flight computation", "1");
+    }
+
+    public CompletableFuture<V> execute(final K key, final Supplier<CompletableFuture<V>> computation) {
+        final CompletableFuture<V> promise = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            OpenCensusService.getInstance().record(coalesced, 1);
+            return existing;
+        }
+        try {
+            computation.get().whenComplete((value, failure) -> {
+                inFlight.remove(key, promise);
+                if (failure != null) {
+                    promise.completeExceptionally(failure);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise;
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+}
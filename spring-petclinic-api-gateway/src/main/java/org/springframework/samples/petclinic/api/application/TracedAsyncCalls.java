@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.samples.petclinic.opencensus.TracerWrapper;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import io.opencensus.common.Scope;
+import io.opencensus.trace.Span;
+
+/**
+ * Adapts {@code AsyncRestTemplate} calls to {@link CompletableFuture}s. The span is opened when the
+ * request is sent and ended when the response arrives on the I/O thread.
+ */
+final class TracedAsyncCalls {
+
+    private TracedAsyncCalls() {
+    }
+
+    static <T> CompletableFuture<T> traced(final String spanName, final Supplier<ListenableFuture<T>> call) {
+        final TracerWrapper tracer = OpenCensusService.getInstance().getTracer();
+        final Span span = tracer.getSpanBuilder(spanName).startSpan();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try (Scope ss = tracer.withSpan(span)) {
+            call.get().addCallback(
+                value -> {
+                    span.end();
+                    result.complete(value);
+                },
+                failure -> {
+                    span.addAnnotation("Failed: " + failure);
+                    span.end();
+                    result.completeExceptionally(failure);
+                });
+        } catch (RuntimeException e) {
+            span.end();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
@@ -30,4 +30,9 @@ public class VisitDetails {
     private final String date;
 
     private final String description;
+
+    /**
+     * Whether the description is only the summary line of a longer description.
+     */
+    private final boolean truncated;
 }
@@ -18,16 +18,20 @@ package org.springframework.samples.petclinic.api.application;
 import io.opencensus.common.Scope;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpEntity;
 import org.springframework.samples.petclinic.opencensus.OpenCensusService;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.joining;
+import static org.springframework.samples.petclinic.api.application.TracedAsyncCalls.traced;
 
 /**
  * @author Maciej Szarlinski
@@ -38,19 +42,79 @@ public class VisitsServiceClient {
 
     private final RestTemplate loadBalancedRestTemplate;
 
-    public Map<Integer, List<VisitDetails>> getVisitsForPets(final List<Integer> petIds, final int ownerId) {
+    private final AsyncRestTemplate loadBalancedAsyncRestTemplate;
+
+    private final HedgedRequests hedgedRequests;
+
+    public Map<Integer, List<VisitDetails>> getVisitsForPets(final List<Integer> petIds) {
         try(Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("VisitsServiceClient.getVisitsForPets").startScopedSpan()) {
-            //TODO:  expose batch interface in Visit Service
-            final ParameterizedTypeReference<List<VisitDetails>> responseType = new ParameterizedTypeReference<List<VisitDetails>>() {
-            };
-            
-            Map<Integer, List<VisitDetails>> returnVisits = petIds.stream()
-                .flatMap(petId -> loadBalancedRestTemplate.exchange("http://visits-service/owners/{ownerId}/pets/{petId}/visits", HttpMethod.GET, null,
-                    responseType, ownerId, petId).getBody().stream())
+            if (petIds.isEmpty()) {
+                return emptyMap();
+            }
+            Map<Integer, List<VisitDetails>> returnVisits = loadBalancedRestTemplate.getForObject("http://visits-service/pets/visits?view=preview&petId={petId}",
+                Visits.class, joinIds(petIds))
+                .getItems()
+                .stream()
                 .collect(groupingBy(VisitDetails::getPetId));
             OpenCensusService.getInstance().getTracer().getCurrentSpan().addAnnotation("Finished getVisitsForPets");
             return returnVisits;
-       }
+        }
+    }
+
+    public CompletableFuture<Map<Integer, List<VisitDetails>>> getVisitsForPetsNonBlocking(final List<Integer> petIds) {
+        if (petIds.isEmpty()) {
+            return CompletableFuture.completedFuture(emptyMap());
+        }
+        return traced("VisitsServiceClient.getVisitsForPets",
+            () -> loadBalancedAsyncRestTemplate.getForEntity("http://visits-service/pets/visits?view=preview&petId={petId}", Visits.class, joinIds(petIds)))
+            .thenApply(HttpEntity::getBody)
+            .thenApply(visits -> visits.getItems().stream().collect(groupingBy(VisitDetails::getPetId)));
+    }
+
+    public Map<Integer, List<OwnerDetailsJson.VisitSlice>> getVisitsJsonForPets(final List<Integer> petIds) {
+        try(Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("VisitsServiceClient.getVisitsForPets").startScopedSpan()) {
+            if (petIds.isEmpty()) {
+                return emptyMap();
+            }
+            return OwnerDetailsJson.visitsByPet(loadBalancedRestTemplate.getForObject("http://visits-service/pets/visits?view=preview&petId={petId}",
+                byte[].class, joinIds(petIds)));
+        }
+    }
+
+    public CompletableFuture<Map<Integer, List<OwnerDetailsJson.VisitSlice>>> getVisitsJsonForPetsNonBlocking(final List<Integer> petIds) {
+        if (petIds.isEmpty()) {
+            return CompletableFuture.completedFuture(emptyMap());
+        }
+        return traced("VisitsServiceClient.getVisitsForPets",
+            () -> loadBalancedAsyncRestTemplate.getForEntity("http://visits-service/pets/visits?view=preview&petId={petId}", byte[].class, joinIds(petIds)))
+            .thenApply(HttpEntity::getBody)
+            .thenApply(OwnerDetailsJson::visitsByPet);
+    }
+
+    public CompletableFuture<Map<Integer, List<OwnerDetailsJson.VisitSlice>>> getVisitsJsonForPetsHedged(final List<Integer> petIds) {
+        if (petIds.isEmpty()) {
+            return CompletableFuture.completedFuture(emptyMap());
+        }
+        return hedgedRequests.getForObject("visits-service", "VisitsServiceClient.getVisitsForPets",
+            "/pets/visits?view=preview&petId={petId}", byte[].class, joinIds(petIds))
+            .thenApply(OwnerDetailsJson::visitsByPet);
+    }
+
+    public boolean isHedged() {
+        return hedgedRequests.isEnabled("visits-service");
+    }
+
+    public CompletableFuture<Map<Integer, List<VisitDetails>>> getVisitsForPetsHedged(final List<Integer> petIds) {
+        if (petIds.isEmpty()) {
+            return CompletableFuture.completedFuture(emptyMap());
+        }
+        return hedgedRequests.getForObject("visits-service", "VisitsServiceClient.getVisitsForPets",
+            "/pets/visits?view=preview&petId={petId}", Visits.class, joinIds(petIds))
+            .thenApply(visits -> visits.getItems().stream().collect(groupingBy(VisitDetails::getPetId)));
+    }
+
+    private String joinIds(final List<Integer> petIds) {
+        return petIds.stream().map(Object::toString).collect(joining(","));
     }
 
 }
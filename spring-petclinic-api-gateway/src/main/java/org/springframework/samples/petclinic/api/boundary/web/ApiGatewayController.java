@@ -15,19 +15,19 @@
  */
 package org.springframework.samples.petclinic.api.boundary.web;
 
-import static java.util.Collections.emptyList;
-
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.samples.petclinic.api.application.OwnerDetails;
-import org.springframework.samples.petclinic.api.application.VisitDetails;
-import org.springframework.samples.petclinic.api.application.VisitsServiceClient;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsAggregator;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.RequiredArgsConstructor;
@@ -39,19 +39,41 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class ApiGatewayController {
 
-    private final CustomersServiceClient customersServiceClient;
+    private final OwnerDetailsAggregator ownerDetailsAggregator;
 
-    private final VisitsServiceClient visitsServiceClient;
+    private final GatewayProperties properties;
 
+    /**
+     * Answers with {@link OwnerDetails} or, in streaming mode, with an {@code OwnerDetailsJson} written by
+     * {@link OwnerDetailsJsonHttpMessageConverter}.
+     */
     @GetMapping(value = "owners/{ownerId}")
-    public OwnerDetails getOwnerDetails(final @PathVariable int ownerId) {
-        final OwnerDetails owner = customersServiceClient.getOwner(ownerId);
-        supplyVisits(owner, visitsServiceClient.getVisitsForPets(owner.getPetIds(), ownerId));
-        return owner;
+    public CompletableFuture<?> getOwnerDetails(final @PathVariable int ownerId) {
+        if (properties.isStreaming()) {
+            return unwrap(ownerDetailsAggregator.getOwnerDetailsJson(ownerId));
+        }
+        return unwrap(ownerDetailsAggregator.getOwnerDetails(ownerId));
+    }
+
+    /**
+     * Completes with the original failure so that its {@code @ResponseStatus} is honoured.
+     */
+    private static <T> CompletableFuture<T> unwrap(final CompletableFuture<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> {
+            if (failure instanceof CompletionException && failure.getCause() != null) {
+                result.completeExceptionally(failure.getCause());
+            } else if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
     }
 
-    private void supplyVisits(final OwnerDetails owner, final Map<Integer, List<VisitDetails>> visitsMapping) {
-        owner.getPets().forEach(pet ->
-            pet.getVisits().addAll(Optional.ofNullable(visitsMapping.get(pet.getId())).orElse(emptyList())));
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void onGatewayExecutorSaturated() {
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsCache;
+import org.springframework.stereotype.Component;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+
+/**
+ * Invalidates the cached owner details after a write to one of the owner's resources (owner, pets, visits)
+ * has been routed, e.g. {@code PUT /api/customer/owners/1} or {@code POST /api/visit/owners/1/pets/2/visits}.
+ * A write answered with 202 is only queued, the owner is kept out of the cache until it is likely committed.
+ */
+@Component
+public class OwnerDetailsCacheInvalidationFilter extends ZuulFilter {
+
+    private final OwnerDetailsCache ownerDetailsCache;
+
+    private final Pattern ownerResource;
+
+    @Autowired
+    public OwnerDetailsCacheInvalidationFilter(OwnerDetailsCache ownerDetailsCache, ZuulProperties zuulProperties) {
+        this.ownerDetailsCache = ownerDetailsCache;
+        this.ownerResource = Pattern.compile(Pattern.quote(zuulProperties.getPrefix()) + "/[^/]+/owners/(\\d{1,9})(/.*)?");
+    }
+
+    @Override
+    public String filterType() {
+        return "post";
+    }
+
+    @Override
+    public int filterOrder() {
+        return 0;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        final HttpServletRequest request = RequestContext.getCurrentContext().getRequest();
+        return !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    @Override
+    public Object run() {
+        final Matcher matcher = ownerResource.matcher(RequestContext.getCurrentContext().getRequest().getRequestURI());
+        if (matcher.matches()) {
+            final int ownerId = Integer.parseInt(matcher.group(1));
+            if (RequestContext.getCurrentContext().getResponseStatusCode() == HttpStatus.ACCEPTED.value()) {
+                ownerDetailsCache.invalidateAfterPendingWrite(ownerId);
+            } else {
+                ownerDetailsCache.invalidate(ownerId);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsJson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes {@link OwnerDetailsJson} straight to the response body, token by token.
+ */
+public class OwnerDetailsJsonHttpMessageConverter extends AbstractHttpMessageConverter<OwnerDetailsJson> {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OwnerDetailsJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON_UTF8, MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return OwnerDetailsJson.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected OwnerDetailsJson readInternal(Class<? extends OwnerDetailsJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("OwnerDetailsJson is write-only");
+    }
+
+    @Override
+    protected void writeInternal(OwnerDetailsJson ownerDetails, HttpOutputMessage outputMessage) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+        ownerDetails.writeTo(generator);
+        generator.flush();
+    }
+}
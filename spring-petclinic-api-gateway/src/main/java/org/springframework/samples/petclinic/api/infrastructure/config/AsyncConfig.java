@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.opencensus.TracingTaskDecorator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors used to fan out the remote calls of the gateway.
+ */
+@Configuration
+class AsyncConfig {
+
+    @Bean
+    ThreadPoolTaskExecutor gatewayExecutor(GatewayProperties properties) {
+        GatewayProperties.Executor config = properties.getExecutor();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getCorePoolSize());
+        executor.setMaxPoolSize(config.getMaxPoolSize());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("gateway-");
+        executor.setTaskDecorator(new TracingTaskDecorator());
+        return executor;
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    ScheduledExecutorService gatewayTimeoutScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("gateway-timeout-"));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evicts expired and idle connections, applies the per-service limits to the routes of all registered
+ * instances and exports the pool statistics through OpenCensus.
+ */
+@Slf4j
+class ConnectionPoolMonitor {
+
+    private static final TagKey KEY_ROUTE = TagKey.create("route");
+
+    private final Measure.MeasureLong leased = OpenCensusService.getInstance()
+        .registerGauge("http_pool_leased", "Connections leased from the pool", "1", KEY_ROUTE);
+
+    private final Measure.MeasureLong pending = OpenCensusService.getInstance()
+        .registerGauge("http_pool_pending", "Requests waiting for a connection", "1", KEY_ROUTE);
+
+    private final Measure.MeasureLong available = OpenCensusService.getInstance()
+        .registerGauge("http_pool_available", "Idle connections kept alive in the pool", "1", KEY_ROUTE);
+
+    private final Measure.MeasureLong max = OpenCensusService.getInstance()
+        .registerGauge("http_pool_max", "Maximum number of connections", "1", KEY_ROUTE);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final DiscoveryClient discoveryClient;
+
+    private final GatewayProperties.Pool config;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("http-pool-monitor-"));
+
+    ConnectionPoolMonitor(PoolingHttpClientConnectionManager connectionManager, DiscoveryClient discoveryClient, GatewayProperties.Pool config) {
+        this.connectionManager = connectionManager;
+        this.discoveryClient = discoveryClient;
+        this.config = config;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::maintain, config.getMonitorInterval(), config.getMonitorInterval(), MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    void maintain() {
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(config.getIdleTimeout(), MILLISECONDS);
+            applyServiceLimits();
+            recordStats();
+        } catch (RuntimeException e) {
+            log.warn("Connection pool maintenance failed", e);
+        }
+    }
+
+    private void applyServiceLimits() {
+        config.getMaxPerService().forEach((serviceId, limit) -> {
+            for (ServiceInstance instance : discoveryClient.getInstances(serviceId)) {
+                HttpHost target = new HttpHost(instance.getHost(), instance.getPort(), instance.isSecure() ? "https" : "http");
+                connectionManager.setMaxPerRoute(new HttpRoute(target, null, instance.isSecure()), limit);
+            }
+        });
+    }
+
+    private void recordStats() {
+        record("total", connectionManager.getTotalStats());
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            record(route.getTargetHost().toHostString(), connectionManager.getStats(route));
+        }
+    }
+
+    private void record(String route, PoolStats stats) {
+        OpenCensusService.getInstance().record(leased, stats.getLeased(), KEY_ROUTE, route);
+        OpenCensusService.getInstance().record(pending, stats.getPending(), KEY_ROUTE, route);
+        OpenCensusService.getInstance().record(available, stats.getAvailable(), KEY_ROUTE, route);
+        OpenCensusService.getInstance().record(max, stats.getMax(), KEY_ROUTE, route);
+    }
+}
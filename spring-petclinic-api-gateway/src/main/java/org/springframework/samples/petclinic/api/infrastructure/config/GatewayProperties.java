@@ -0,0 +1,282 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Typesafe custom configuration of the gateway's outbound calls.
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway")
+public class GatewayProperties {
+
+    /**
+     * Assemble the owner details by splicing the JSON responses of customers-service and visits-service
+     * instead of binding them to objects and serializing those again.
+     */
+    private boolean streaming = false;
+
+    private Client client = new Client();
+
+    private Executor executor = new Executor();
+
+    private Timeouts timeouts = new Timeouts();
+
+    private Resilience resilience = new Resilience();
+
+    private Hedging hedging = new Hedging();
+
+    private Cache cache = new Cache();
+
+    private Revalidation revalidation = new Revalidation();
+
+    private Visits visits = new Visits();
+
+    @Data
+    public static class Client {
+
+        /**
+         * Issue remote calls through the non-blocking {@code AsyncRestTemplate} instead of running
+         * blocking {@code RestTemplate} calls on the gateway executor.
+         */
+        private boolean nonBlocking = false;
+
+        private Pool pool = new Pool();
+
+        private Async async = new Async();
+    }
+
+    /**
+     * Connection pool of the blocking {@code RestTemplate}. Durations in milliseconds.
+     */
+    @Data
+    public static class Pool {
+
+        private int maxTotal = 200;
+
+        private int defaultMaxPerRoute = 50;
+
+        /**
+         * Per-route limit applied to every registered instance of the given service id.
+         */
+        private Map<String, Integer> maxPerService = new HashMap<>();
+
+        private int connectTimeout = 1000;
+
+        private int readTimeout = 3000;
+
+        /**
+         * How long a caller waits for a connection when the pool is exhausted.
+         */
+        private int connectionRequestTimeout = 500;
+
+        /**
+         * Keep-alive used when the server does not announce one.
+         */
+        private long keepAlive = 30000;
+
+        private long idleTimeout = 30000;
+
+        private int validateAfterInactivity = 2000;
+
+        /**
+         * Interval of idle eviction, per-service limit refresh and pool metrics.
+         */
+        private long monitorInterval = 5000;
+    }
+
+    @Data
+    public static class Async {
+
+        private int ioThreads = 2;
+
+        private int maxConnections = 1000;
+
+        private int maxConnectionsPerRoute = 200;
+    }
+
+    /**
+     * Worker pool running the remote calls, separate from the Tomcat request threads.
+     */
+    @Data
+    public static class Executor {
+
+        private int corePoolSize = 8;
+
+        private int maxPoolSize = 32;
+
+        private int queueCapacity = 256;
+    }
+
+    /**
+     * Timeouts in milliseconds.
+     */
+    @Data
+    public static class Timeouts {
+
+        private long customersService = 2000;
+
+        private long visitsService = 2000;
+
+        /**
+         * Overall deadline for assembling the owner details.
+         */
+        private long ownerDetails = 3000;
+    }
+
+    /**
+     * Isolation of the downstream services from each other and from the gateway.
+     */
+    @Data
+    public static class Resilience {
+
+        /**
+         * Answer with the owner and its pets, flagged as incomplete, when the visits cannot be loaded.
+         */
+        private boolean degradeVisits = true;
+
+        private Dependency customersService = new Dependency();
+
+        private Dependency visitsService = new Dependency();
+    }
+
+    /**
+     * Bulkhead and circuit breaker of a single downstream service.
+     */
+    @Data
+    public static class Dependency {
+
+        /**
+         * Calls to the service that may be in flight at the same time, further calls are rejected immediately.
+         */
+        private int maxConcurrentCalls = 16;
+
+        /**
+         * Number of most recent calls the failure rate is computed over.
+         */
+        private int slidingWindowSize = 20;
+
+        /**
+         * Calls needed in the window before the failure rate is evaluated.
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * Failure rate in percent at which the circuit opens.
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * Milliseconds the circuit stays open before a single trial call is let through.
+         */
+        private long openDuration = 10000;
+    }
+
+    /**
+     * Duplicate reads sent to a second instance when the first one is slow.
+     */
+    @Data
+    public static class Hedging {
+
+        /**
+         * Service ids whose reads are hedged, hedging is off while empty.
+         */
+        private List<String> services = new ArrayList<>();
+
+        /**
+         * Percentile of the recently observed latency after which the duplicate is sent.
+         */
+        private double percentile = 95;
+
+        /**
+         * Lower bound of the hedge delay in milliseconds.
+         */
+        private long minDelay = 5;
+
+        /**
+         * Number of recent successful requests per service the percentile is computed over.
+         */
+        private int latencyWindow = 256;
+
+        /**
+         * Requests that must have been observed before the first one is hedged.
+         */
+        private int minSamples = 50;
+
+        /**
+         * Hedges earned per primary request, 0.1 caps the extra load at 10 percent.
+         */
+        private double budgetRatio = 0.1;
+
+        /**
+         * Unused hedges that may accumulate, bounds a burst of hedges after a quiet period.
+         */
+        private int maxBurst = 10;
+    }
+
+    /**
+     * Cache of assembled owner details, invalidated by writes routed through the gateway.
+     */
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        private long maxSize = 10000;
+
+        /**
+         * Time to live in milliseconds.
+         */
+        private long ttl = 60000;
+
+        /**
+         * Milliseconds the details of an owner are not cached after a write was accepted (202) but not yet
+         * committed, e.g. a queued pet or visit. Should exceed the time writes spend in the services' queues.
+         */
+        private long pendingWriteWindow = 10000;
+    }
+
+    /**
+     * Responses of the load-balanced clients kept with their ETag and revalidated with If-None-Match.
+     */
+    @Data
+    public static class Revalidation {
+
+        private boolean enabled = true;
+
+        /**
+         * Bytes of response bodies kept.
+         */
+        private long maxBytes = 64 * 1024 * 1024;
+    }
+
+    @Data
+    public static class Visits {
+
+        /**
+         * Maximum number of pet ids per batch request, larger owners are fetched in concurrent chunks.
+         */
+        private int batchSize = 50;
+    }
+}
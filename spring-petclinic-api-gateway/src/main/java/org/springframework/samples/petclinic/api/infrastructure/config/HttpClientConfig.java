@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Pooled, keep-alive HTTP connections for the blocking {@code RestTemplate}.
+ */
+@Configuration
+class HttpClientConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    PoolingHttpClientConnectionManager gatewayConnectionManager(GatewayProperties properties) {
+        GatewayProperties.Pool config = properties.getClient().getPool();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(config.getDefaultMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivity());
+        return connectionManager;
+    }
+
+    @Bean
+    HttpComponentsClientHttpRequestFactory gatewayRequestFactory(PoolingHttpClientConnectionManager gatewayConnectionManager,
+                                                                 GatewayProperties properties) {
+        GatewayProperties.Pool config = properties.getClient().getPool();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(config.getConnectTimeout())
+            .setSocketTimeout(config.getReadTimeout())
+            .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+            .build();
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+            .setConnectionManager(gatewayConnectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy((response, context) -> {
+                long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return keepAlive > 0 ? keepAlive : config.getKeepAlive();
+            })
+            .disableCookieManagement()
+            .build());
+    }
+
+    @Bean
+    ConnectionPoolMonitor gatewayConnectionPoolMonitor(PoolingHttpClientConnectionManager gatewayConnectionManager,
+                                                       DiscoveryClient discoveryClient, GatewayProperties properties) {
+        return new ConnectionPoolMonitor(gatewayConnectionManager, discoveryClient, properties.getClient().getPool());
+    }
+}
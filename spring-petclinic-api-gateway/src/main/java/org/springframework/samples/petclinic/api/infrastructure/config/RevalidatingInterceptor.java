@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Keeps GET responses that carry an ETag and revalidates them with If-None-Match. A 304 from the service is
+ * answered with the kept body, so unchanged owners and visits are neither transferred nor rendered again.
+ * Registered ahead of the load balancer, the kept responses are shared by all instances of a service. Hedged
+ * requests name their instance in the URI, their responses are kept per instance.
+ */
+public class RevalidatingInterceptor implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
+
+    private static final TagKey KEY_OUTCOME = TagKey.create("outcome");
+
+    private final Measure.MeasureLong revalidations = OpenCensusService.getInstance()
+        .registerCounter("http_client_revalidations", "Kept responses revalidated with the service", "1", KEY_OUTCOME);
+
+    private final Cache<String, KeptResponse> responses;
+
+    RevalidatingInterceptor(GatewayProperties.Revalidation config) {
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(config.getMaxBytes())
+            .weigher((String uri, KeptResponse response) -> uri.length() + response.body.length)
+            .build();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (request.getMethod() != HttpMethod.GET) {
+            return execution.execute(request, body);
+        }
+        String uri = request.getURI().toString();
+        KeptResponse kept = revalidate(request, uri);
+        return handle(uri, kept, execution.execute(request, body));
+    }
+
+    @Override
+    public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body, AsyncClientHttpRequestExecution execution) throws IOException {
+        if (request.getMethod() != HttpMethod.GET) {
+            return execution.executeAsync(request, body);
+        }
+        String uri = request.getURI().toString();
+        KeptResponse kept = revalidate(request, uri);
+        return new ListenableFutureAdapter<ClientHttpResponse, ClientHttpResponse>(execution.executeAsync(request, body)) {
+            @Override
+            protected ClientHttpResponse adapt(ClientHttpResponse response) throws ExecutionException {
+                try {
+                    return handle(uri, kept, response);
+                } catch (IOException e) {
+                    throw new ExecutionException(e);
+                }
+            }
+        };
+    }
+
+    private KeptResponse revalidate(HttpRequest request, String uri) {
+        KeptResponse kept = responses.getIfPresent(uri);
+        if (kept != null) {
+            request.getHeaders().setIfNoneMatch(kept.etag);
+        }
+        return kept;
+    }
+
+    private ClientHttpResponse handle(String uri, KeptResponse kept, ClientHttpResponse response) throws IOException {
+        if (kept != null) {
+            boolean notModified = response.getStatusCode() == HttpStatus.NOT_MODIFIED;
+            OpenCensusService.getInstance().record(revalidations, 1, KEY_OUTCOME, notModified ? "not_modified" : "modified");
+            if (notModified) {
+                response.close();
+                return kept;
+            }
+        }
+
+        String etag = response.getHeaders().getETag();
+        if (response.getStatusCode() != HttpStatus.OK || etag == null) {
+            responses.invalidate(uri);
+            return response;
+        }
+        try {
+            KeptResponse fresh = new KeptResponse(etag, response.getHeaders(), StreamUtils.copyToByteArray(response.getBody()));
+            responses.put(uri, fresh);
+            return fresh;
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Immutable copy of a response, handed out again for every 304.
+     */
+    private static final class KeptResponse implements ClientHttpResponse {
+
+        private final String etag;
+
+        private final HttpHeaders headers;
+
+        private final byte[] body;
+
+        private KeptResponse(String etag, HttpHeaders headers, byte[] body) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(headers);
+            this.etag = etag;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+            this.body = body;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return HttpStatus.OK.value();
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.OK.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -15,14 +15,25 @@
  */
 package org.springframework.samples.petclinic.api.infrastructure.config;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.samples.petclinic.api.boundary.web.OwnerDetailsJsonHttpMessageConverter;
+import org.springframework.samples.petclinic.api.infrastructure.loadbalancer.AsyncLoadBalancingInterceptor;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.samples.petclinic.opencensus.TracingAsyncInterceptor;
 import org.springframework.samples.petclinic.opencensus.TracingIncomingInterceptor;
 import org.springframework.samples.petclinic.opencensus.TracingInterceptor;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -39,6 +50,12 @@ public class WebConfig extends WebMvcConfigurerAdapter {
         registry.addViewController("/").setViewName("index");
     }
 
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // ahead of Jackson, which would happily serialize the splicing state as a bean
+        converters.add(0, new OwnerDetailsJsonHttpMessageConverter());
+    }
+
     TracingIncomingInterceptor tracingIncomingInterceptor = new TracingIncomingInterceptor();
 
     @Override
@@ -46,17 +63,54 @@ public class WebConfig extends WebMvcConfigurerAdapter {
         registry.addInterceptor(tracingIncomingInterceptor);
     }
 
+    @Bean
+    RevalidatingInterceptor revalidatingInterceptor(GatewayProperties properties) {
+        return new RevalidatingInterceptor(properties.getRevalidation());
+    }
+
     @Bean
     @LoadBalanced
-    RestTemplate loadBalancedRestTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
+    RestTemplate loadBalancedRestTemplate(HttpComponentsClientHttpRequestFactory gatewayRequestFactory,
+                                          RevalidatingInterceptor revalidatingInterceptor, GatewayProperties properties) {
+        RestTemplate restTemplate = new RestTemplate(gatewayRequestFactory);
 
         List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
         if (CollectionUtils.isEmpty(interceptors)) {
             interceptors = new ArrayList<>();
         }
         interceptors.add(new TracingInterceptor());
+        if (properties.getRevalidation().isEnabled()) {
+            interceptors.add(revalidatingInterceptor);
+        }
         restTemplate.setInterceptors(interceptors);
         return restTemplate;
     }
+
+    @Bean(destroyMethod = "close")
+    CloseableHttpAsyncClient gatewayAsyncHttpClient(GatewayProperties properties) {
+        GatewayProperties.Async config = properties.getClient().getAsync();
+        return HttpAsyncClients.custom()
+            .setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(config.getIoThreads()).build())
+            .setMaxConnTotal(config.getMaxConnections())
+            .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+            .build();
+    }
+
+    /**
+     * Load balanced by the {@link AsyncLoadBalancingInterceptor} rather than {@code @LoadBalanced}, so the Ribbon
+     * statistics see when responses arrive.
+     */
+    @Bean
+    AsyncRestTemplate loadBalancedAsyncRestTemplate(CloseableHttpAsyncClient gatewayAsyncHttpClient, SpringClientFactory clientFactory,
+                                                    RevalidatingInterceptor revalidatingInterceptor, GatewayProperties properties) {
+        AsyncRestTemplate asyncRestTemplate = new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(gatewayAsyncHttpClient));
+        List<AsyncClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        interceptors.add(new TracingAsyncInterceptor());
+        if (properties.getRevalidation().isEnabled()) {
+            interceptors.add(revalidatingInterceptor);
+        }
+        interceptors.add(new AsyncLoadBalancingInterceptor(clientFactory));
+        asyncRestTemplate.setInterceptors(interceptors);
+        return asyncRestTemplate;
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.loadbalancer;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.netflix.loadbalancer.LoadBalancerContext;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+/**
+ * Ribbon load balancing for the {@code AsyncRestTemplate}, in place of {@code @LoadBalanced}. The Spring Cloud
+ * interceptor notes a request as completed as soon as the future is returned, which left the {@link ServerStats}
+ * read by {@link LatencyAwareRule} with response times near zero and no requests in flight. Here the request
+ * stays open in the statistics of the chosen instance until its response or failure arrives.
+ */
+public class AsyncLoadBalancingInterceptor implements AsyncClientHttpRequestInterceptor {
+
+    private final SpringClientFactory clientFactory;
+
+    public AsyncLoadBalancingInterceptor(SpringClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    @Override
+    public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body,
+                                                          AsyncClientHttpRequestExecution execution) throws IOException {
+        final String serviceId = request.getURI().getHost();
+        final Server server = clientFactory.getLoadBalancer(serviceId).chooseServer("default");
+        if (server == null) {
+            throw new IllegalStateException("No instances available for " + serviceId);
+        }
+        final URI uri = UriComponentsBuilder.fromUri(request.getURI())
+            .host(server.getHost()).port(server.getPort()).build(true).toUri();
+        final LoadBalancerContext loadBalancerContext = clientFactory.getLoadBalancerContext(serviceId);
+        final ServerStats stats = loadBalancerContext.getServerStats(server);
+
+        loadBalancerContext.noteOpenConnection(stats);
+        final long start = System.currentTimeMillis();
+        final ListenableFuture<ClientHttpResponse> response;
+        try {
+            response = execution.executeAsync(new HttpRequestWrapper(request) {
+                @Override
+                public URI getURI() {
+                    return uri;
+                }
+            }, body);
+        } catch (IOException | RuntimeException e) {
+            loadBalancerContext.noteRequestCompletion(stats, null, e, System.currentTimeMillis() - start, null);
+            throw e;
+        }
+        response.addCallback(
+            value -> loadBalancerContext.noteRequestCompletion(stats, value, null, System.currentTimeMillis() - start, null),
+            failure -> loadBalancerContext.noteRequestCompletion(stats, null, failure, System.currentTimeMillis() - start, null));
+        return response;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancer;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Power-of-two-choices rule: two random reachable instances are compared and the one with the lower score,
+ * the EWMA of its response time multiplied by its in-flight requests plus one, is chosen.
+ * <p>
+ * The EWMA is fed from the Ribbon {@link ServerStats} that the load-balanced templates, the Zuul routes and
+ * {@link AsyncLoadBalancingInterceptor} update when each request completes. It decays while an instance receives no traffic, so an instance that was slow is
+ * tried again after a while instead of being avoided forever. Enabled per service with
+ * {@code <service>.ribbon.NFLoadBalancerRuleClassName}.
+ */
+public class LatencyAwareRule extends AbstractLoadBalancerRule {
+
+    /**
+     * Time constant of the EWMA: a sample seen this long ago weighs 1/e of a current one.
+     */
+    static final long DECAY_MILLIS = 10000;
+
+    /**
+     * The score gauge of an instance is recorded at most this often, not on every choice.
+     */
+    static final long SCORE_RECORD_INTERVAL_MILLIS = 1000;
+
+    private static final TagKey KEY_INSTANCE = TagKey.create("instance");
+
+    private static final Measure.MeasureLong SCORE = OpenCensusService.getInstance()
+        .registerGauge("lb_instance_score", "Response time EWMA times in-flight requests plus one", "ms", KEY_INSTANCE);
+
+    private final ConcurrentMap<String, Instance> instances = new ConcurrentHashMap<>();
+
+    private String clientName = "default";
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+        this.clientName = clientConfig.getClientName();
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer loadBalancer = getLoadBalancer();
+        if (loadBalancer == null) {
+            return null;
+        }
+        List<Server> servers = loadBalancer.getReachableServers();
+        if (servers.isEmpty()) {
+            return null;
+        }
+        if (servers.size() == 1) {
+            return servers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(servers.size());
+        int second = random.nextInt(servers.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        long now = System.currentTimeMillis();
+        Server a = servers.get(first);
+        Server b = servers.get(second);
+        ServerStats statsA = serverStats(loadBalancer, a);
+        ServerStats statsB = serverStats(loadBalancer, b);
+        if (statsA == null || statsB == null) {
+            return a;
+        }
+        Instance instanceA = instance(a);
+        Instance instanceB = instance(b);
+        double latencyA = instanceA.ewma.update(statsA, now);
+        double latencyB = instanceB.ewma.update(statsB, now);
+        // an instance without samples yet is assumed to be as fast as the other one, not infinitely fast
+        double scoreA = score(a, instanceA, statsA, latencyA >= 0 ? latencyA : Math.max(latencyB, 1), now);
+        double scoreB = score(b, instanceB, statsB, latencyB >= 0 ? latencyB : Math.max(latencyA, 1), now);
+        return scoreA <= scoreB ? a : b;
+    }
+
+    private Instance instance(Server server) {
+        return instances.computeIfAbsent(server.getHostPort(), hostPort -> new Instance());
+    }
+
+    private double score(Server server, Instance instance, ServerStats stats, double latency, long now) {
+        double score = latency * (stats.getActiveRequestsCount() + 1);
+        long recorded = instance.scoreRecordedAt.get();
+        if (now - recorded >= SCORE_RECORD_INTERVAL_MILLIS && instance.scoreRecordedAt.compareAndSet(recorded, now)) {
+            OpenCensusService.getInstance().record(SCORE, Math.round(score), KEY_INSTANCE, clientName + "/" + server.getHostPort());
+        }
+        return score;
+    }
+
+    private static ServerStats serverStats(ILoadBalancer loadBalancer, Server server) {
+        if (loadBalancer instanceof AbstractLoadBalancer) {
+            LoadBalancerStats stats = ((AbstractLoadBalancer) loadBalancer).getLoadBalancerStats();
+            return stats != null ? stats.getSingleServerStat(server) : null;
+        }
+        return null;
+    }
+
+    private static class Instance {
+
+        private final Ewma ewma = new Ewma();
+
+        private final AtomicLong scoreRecordedAt = new AtomicLong();
+    }
+
+    /**
+     * Time-decayed EWMA of the response time of one instance. {@link ServerStats} only keep a cumulative
+     * average, so the samples since the last update are recovered from the change of sum and count.
+     */
+    static class Ewma {
+
+        private long lastCount;
+
+        private double lastSum;
+
+        private long lastUpdate;
+
+        private double value;
+
+        synchronized double update(ServerStats stats, long now) {
+            long count = stats.getTotalRequestsCount();
+            double sum = stats.getResponseTimeAvg() * count;
+            return update(count, sum, now);
+        }
+
+        /**
+         * @return the current EWMA in milliseconds, or -1 while no request to the instance has completed
+         */
+        synchronized double update(long count, double sum, long now) {
+            if (count == 0 && lastCount == 0) {
+                return -1;
+            }
+            double weight = lastUpdate == 0 ? 0 : Math.exp(-(double) (now - lastUpdate) / DECAY_MILLIS);
+            if (count > lastCount) {
+                double average = (sum - lastSum) / (count - lastCount);
+                value = value * weight + average * (1 - weight);
+                lastUpdate = now;
+            } else if (count < lastCount) {
+                // statistics were reset, start over
+                lastCount = 0;
+                lastSum = 0;
+                lastUpdate = 0;
+                value = 0;
+                return update(count, sum, now);
+            } else {
+                // no traffic, let the instance look healthier over time
+                return value * weight;
+            }
+            lastCount = count;
+            lastSum = sum;
+            return value;
+        }
+    }
+}
@@ -7,4 +7,12 @@ angular.module('ownerDetails')
         $http.get('api/gateway/owners/' + $stateParams.ownerId).then(function (resp) {
             self.owner = resp.data;
         });
+
+        self.showDescription = function (pet, visit) {
+            var url = 'api/visit/owners/' + $stateParams.ownerId + '/pets/' + pet.id + '/visits/' + visit.id + '/description';
+            $http.get(url, {transformResponse: angular.identity}).then(function (resp) {
+                visit.description = resp.data;
+                visit.truncated = false;
+            });
+        };
     }]);
@@ -3,8 +3,37 @@
 angular.module('ownerList')
     .controller('OwnerListController', ['$http', function ($http) {
         var self = this;
+        var pageSize = 20;
 
-        $http.get('api/customer/owners').then(function (resp) {
-            self.owners = resp.data;
-        });
+        self.owners = [];
+        self.query = '';
+
+        function fetch(cursor) {
+            var params = {size: pageSize, lastName: self.query || ''};
+            if (cursor) {
+                params.cursor = cursor;
+            }
+            var query = self.query;
+            return $http.get('api/customer/owners', {params: params}).then(function (resp) {
+                if (query !== self.query) {
+                    // the filter changed while this page was loading
+                    return;
+                }
+                self.owners = cursor ? self.owners.concat(resp.data.items) : resp.data.items;
+                self.nextCursor = resp.data.nextCursor;
+            });
+        }
+
+        self.search = function () {
+            self.nextCursor = null;
+            fetch(null);
+        };
+
+        self.loadMore = function () {
+            if (self.nextCursor) {
+                fetch(self.nextCursor);
+            }
+        };
+
+        self.search();
     }]);
@@ -1,7 +1,7 @@
 'use strict';
 
 angular.module('petForm')
-    .controller('PetFormController', ['$http', '$state', '$stateParams', function ($http, $state, $stateParams) {
+    .controller('PetFormController', ['$http', '$q', '$state', '$stateParams', '$timeout', function ($http, $q, $state, $stateParams, $timeout) {
         var self = this;
         var ownerId = $stateParams.ownerId || 0;
 
@@ -28,6 +28,21 @@ angular.module('petForm')
             }
         });
 
+        // saves are processed asynchronously, poll their status until they are done
+        function awaitSave(status) {
+            if (status.state === 'DONE') {
+                return status;
+            }
+            if (status.state === 'FAILED') {
+                return $q.reject({data: {error: status.error}});
+            }
+            return $timeout(function () {
+                return $http.get('api/customer/petSaves/' + status.id);
+            }, 500).then(function (resp) {
+                return awaitSave(resp.data);
+            });
+        }
+
         self.submit = function () {
             var id = self.pet.id || 0;
 
@@ -45,10 +60,12 @@ angular.module('petForm')
                 req = $http.post("api/customer/owners/" + ownerId + "/pets", data);
             }
 
-            req.then(function () {
+            req.then(function (resp) {
+                return awaitSave(resp.data);
+            }).then(function () {
                 $state.go("owners", {ownerId: ownerId});
             }, function (response) {
-                var error = response.data;
+                var error = response.data || {error: response.statusText};
                 error.errors = error.errors || [];
                 alert(error.error + "\r\n" + error.errors.map(function (e) {
                         return e.field + ": " + e.defaultMessage;
@@ -5,12 +5,36 @@ angular.module('visits')
         var self = this;
         var petId = $stateParams.petId || 0;
         var url = "api/visit/owners/" + ($stateParams.ownerId || 0) + "/pets/" + petId + "/visits";
+        var pageSize = 10;
         self.date = new Date();
         self.desc = "";
+        self.visits = [];
 
-        $http.get(url).then(function (resp) {
-            self.visits = resp.data;
-        });
+        function fetch(cursor) {
+            var params = {view: 'preview', size: pageSize};
+            if (cursor) {
+                params.cursor = cursor;
+            }
+            return $http.get(url, {params: params}).then(function (resp) {
+                self.visits = self.visits.concat(resp.data.items);
+                self.nextCursor = resp.data.nextCursor;
+            });
+        }
+
+        self.loadMore = function () {
+            if (self.nextCursor) {
+                fetch(self.nextCursor);
+            }
+        };
+
+        fetch(null);
+
+        self.showDescription = function (visit) {
+            $http.get(url + "/" + visit.id + "/description", {transformResponse: angular.identity}).then(function (resp) {
+                visit.description = resp.data;
+                visit.truncated = false;
+            });
+        };
 
         self.submit = function () {
             var data = {
@@ -21,7 +45,8 @@ angular.module('visits')
             $http.post(url, data).then(function () {
                 $state.go("owners", { ownerId: $stateParams.ownerId });
             }, function (response) {
-                var error = response.data;
+                var error = response.data || {error: response.statusText};
+                error.errors = error.errors || [];
                 alert(error.error + "\r\n" + error.errors.map(function (e) {
                         return e.field + ": " + e.defaultMessage;
                     }).join("\r\n"));
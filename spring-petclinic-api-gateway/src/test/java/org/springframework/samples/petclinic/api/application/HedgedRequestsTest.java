@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class HedgedRequestsTest {
+
+    @Test
+    public void shouldNotHedgeBeforeEnoughSamples() {
+        HedgedRequests.LatencyWindow latency = new HedgedRequests.LatencyWindow(10);
+        latency.record(20);
+
+        assertThat(latency.percentile(95, 2)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldComputePercentileOfRecentSamplesOnly() {
+        HedgedRequests.LatencyWindow latency = new HedgedRequests.LatencyWindow(10);
+        for (int i = 0; i < 10; i++) {
+            latency.record(1000);
+        }
+        for (int i = 1; i <= 10; i++) {
+            latency.record(i * 10);
+        }
+
+        assertThat(latency.percentile(90, 10)).isEqualTo(90);
+        assertThat(latency.percentile(50, 10)).isEqualTo(50);
+    }
+
+    @Test
+    public void shouldCapHedgesByBudget() {
+        HedgedRequests.Budget budget = new HedgedRequests.Budget(0.1, 10);
+        for (int i = 0; i < 25; i++) {
+            budget.deposit();
+        }
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+}
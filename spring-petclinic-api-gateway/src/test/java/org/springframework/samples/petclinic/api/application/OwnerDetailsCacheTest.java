@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.springframework.samples.petclinic.api.infrastructure.config.GatewayProperties;
+
+public class OwnerDetailsCacheTest {
+
+    private final GatewayProperties properties = new GatewayProperties();
+
+    @Test
+    public void shouldNotStoreLoadsStartedBeforeAnInvalidation() {
+        OwnerDetailsCache cache = new OwnerDetailsCache(properties);
+        long generation = cache.generation(1);
+        cache.invalidate(1);
+
+        cache.put(1, "stale", generation);
+
+        assertThat(cache.get(1, String.class)).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheAnOwnerWhileAWriteIsPending() {
+        OwnerDetailsCache cache = new OwnerDetailsCache(properties);
+        cache.invalidateAfterPendingWrite(1);
+        cache.invalidate(2);
+
+        // loaded after the 202 but possibly before the write committed
+        cache.put(1, "stale", cache.generation(1));
+        cache.put(2, "fresh", cache.generation(2));
+
+        assertThat(cache.get(1, String.class)).isNull();
+        assertThat(cache.get(2, String.class)).isEqualTo("fresh");
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class OwnerDetailsJsonTest {
+
+    private static final String OWNER = "{\"id\":1,\"firstName\":\"George\",\"lastName\":\"Franklin\","
+        + "\"pets\":[{\"id\":1,\"name\":\"Leo\",\"type\":{\"id\":1,\"name\":\"cat\"}},{\"id\":2,\"name\":\"Basil\"}]}";
+
+    private static final String VISITS = "{\"items\":[{\"id\":4,\"date\":\"2013-01-04\",\"description\":\"spayed\",\"petId\":2},"
+        + "{\"id\":5,\"date\":\"2013-01-05\",\"description\":\"rabies shot\",\"petId\":1},"
+        + "{\"id\":6,\"date\":\"2013-01-06\",\"description\":\"neutered\",\"petId\":2}]}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void shouldExtractPetIds() {
+        OwnerDetailsJson owner = OwnerDetailsJson.fromOwner(bytes(OWNER)).withVisits(emptyMap());
+
+        assertThat(owner.getPetIds()).containsExactly(1, 2);
+    }
+
+    @Test
+    public void shouldSpliceVisitsIntoTheirPets() throws IOException {
+        OwnerDetailsJson owner = OwnerDetailsJson.fromOwner(bytes(OWNER)).withVisits(OwnerDetailsJson.visitsByPet(bytes(VISITS)));
+
+        assertThat(mapper.readTree(write(owner))).isEqualTo(mapper.readTree("{\"id\":1,\"firstName\":\"George\",\"lastName\":\"Franklin\","
+            + "\"pets\":[{\"id\":1,\"name\":\"Leo\",\"type\":{\"id\":1,\"name\":\"cat\"},"
+            + "\"visits\":[{\"id\":5,\"date\":\"2013-01-05\",\"description\":\"rabies shot\",\"petId\":1}]},"
+            + "{\"id\":2,\"name\":\"Basil\",\"visits\":[{\"id\":4,\"date\":\"2013-01-04\",\"description\":\"spayed\",\"petId\":2},"
+            + "{\"id\":6,\"date\":\"2013-01-06\",\"description\":\"neutered\",\"petId\":2}]}],"
+            + "\"visitsOmitted\":false}"));
+    }
+
+    @Test
+    public void shouldSpliceVisitsByteForByte() throws IOException {
+        String visit = "{ \"id\":7, \"description\":\"Bäsil \\\"the brave\\\"\", \"petId\":2 }";
+        OwnerDetailsJson owner = OwnerDetailsJson.fromOwner(bytes(OWNER))
+            .withVisits(OwnerDetailsJson.visitsByPet(bytes("{\"items\":[" + visit + "]}")));
+
+        assertThat(write(owner)).contains("\"visits\":[" + visit + "]");
+        assertThat(mapper.readTree(write(owner)).get("pets").get(1).get("visits").get(0).get("description").asText())
+            .isEqualTo("Bäsil \"the brave\"");
+    }
+
+    @Test
+    public void shouldFlagOmittedVisits() throws IOException {
+        OwnerDetailsJson owner = OwnerDetailsJson.fromOwner(bytes(OWNER));
+
+        assertThat(mapper.readTree(write(owner)).get("visitsOmitted").asBoolean()).isTrue();
+        assertThat(mapper.readTree(write(owner)).get("pets").get(0).get("visits").size()).isEqualTo(0);
+    }
+
+    private String write(OwnerDetailsJson owner) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            owner.writeTo(generator);
+        }
+        return out.toString();
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
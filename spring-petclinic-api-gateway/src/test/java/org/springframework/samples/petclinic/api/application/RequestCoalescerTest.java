@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer<Integer, String> coalescer = new RequestCoalescer<>("test");
+
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @Test
+    public void shouldShareInFlightComputationForSameKey() {
+        CompletableFuture<String> remote = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.execute(1, () -> compute(remote));
+        CompletableFuture<String> second = coalescer.execute(1, () -> compute(remote));
+        remote.complete("George");
+
+        assertThat(computations.get()).isEqualTo(1);
+        assertThat(first.join()).isEqualTo("George");
+        assertThat(second.join()).isEqualTo("George");
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    @Test
+    public void shouldNotShareComputationsOfDifferentKeys() {
+        coalescer.execute(1, () -> compute(new CompletableFuture<>()));
+        coalescer.execute(2, () -> compute(new CompletableFuture<>()));
+
+        assertThat(computations.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldPropagateFailureToAllWaitersAndReleaseKey() {
+        CompletableFuture<String> remote = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.execute(1, () -> compute(remote));
+        CompletableFuture<String> second = coalescer.execute(1, () -> compute(remote));
+        remote.completeExceptionally(new IllegalStateException("customers-service down"));
+
+        assertThat(first.isCompletedExceptionally()).isTrue();
+        assertThat(second.isCompletedExceptionally()).isTrue();
+
+        coalescer.execute(1, () -> compute(new CompletableFuture<>()));
+        assertThat(computations.get()).isEqualTo(2);
+    }
+
+    private CompletableFuture<String> compute(CompletableFuture<String> result) {
+        computations.incrementAndGet();
+        return result;
+    }
+}
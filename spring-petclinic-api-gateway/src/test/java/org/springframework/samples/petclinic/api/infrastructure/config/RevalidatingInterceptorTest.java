@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.config;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+public class RevalidatingInterceptorTest {
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    private MockRestServiceServer server;
+
+    @Before
+    public void setup() {
+        restTemplate.setInterceptors(singletonList(new RevalidatingInterceptor(new GatewayProperties.Revalidation())));
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @Test
+    public void shouldServeKeptBodyWhenNotModified() {
+        server.expect(requestTo("http://customers-service/owners/1"))
+            .andRespond(withSuccess("{\"id\":1}", MediaType.APPLICATION_JSON).headers(etag("\"7\"")));
+        server.expect(requestTo("http://customers-service/owners/1"))
+            .andExpect(header("If-None-Match", "\"7\""))
+            .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        assertThat(restTemplate.getForObject("http://customers-service/owners/1", String.class)).isEqualTo("{\"id\":1}");
+        assertThat(restTemplate.getForObject("http://customers-service/owners/1", String.class)).isEqualTo("{\"id\":1}");
+        server.verify();
+    }
+
+    @Test
+    public void shouldReplaceKeptBodyWhenModified() {
+        server.expect(requestTo("http://customers-service/owners/1"))
+            .andRespond(withSuccess("{\"id\":1}", MediaType.APPLICATION_JSON).headers(etag("\"7\"")));
+        server.expect(requestTo("http://customers-service/owners/1"))
+            .andExpect(header("If-None-Match", "\"7\""))
+            .andRespond(withSuccess("{\"id\":1,\"city\":\"Monona\"}", MediaType.APPLICATION_JSON).headers(etag("\"8\"")));
+        server.expect(requestTo("http://customers-service/owners/1"))
+            .andExpect(header("If-None-Match", "\"8\""))
+            .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        restTemplate.getForObject("http://customers-service/owners/1", String.class);
+        restTemplate.getForObject("http://customers-service/owners/1", String.class);
+        assertThat(restTemplate.getForObject("http://customers-service/owners/1", String.class))
+            .isEqualTo("{\"id\":1,\"city\":\"Monona\"}");
+        server.verify();
+    }
+
+    private static HttpHeaders etag(String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        return headers;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.loadbalancer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import com.netflix.client.RetryHandler;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerContext;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+public class AsyncLoadBalancingInterceptorTest {
+
+    private final Server server = new Server("10.0.0.7", 8081);
+
+    private final ServerStats stats = new ServerStats();
+
+    private final LoadBalancerContext loadBalancerContext = mock(LoadBalancerContext.class);
+
+    private final AsyncClientHttpRequestExecution execution = mock(AsyncClientHttpRequestExecution.class);
+
+    private final SettableListenableFuture<ClientHttpResponse> response = new SettableListenableFuture<>();
+
+    private AsyncLoadBalancingInterceptor interceptor;
+
+    @Before
+    public void setUp() throws Exception {
+        SpringClientFactory clientFactory = mock(SpringClientFactory.class);
+        ILoadBalancer loadBalancer = mock(ILoadBalancer.class);
+        when(clientFactory.getLoadBalancer("visits-service")).thenReturn(loadBalancer);
+        when(clientFactory.getLoadBalancerContext("visits-service")).thenReturn(loadBalancerContext);
+        when(loadBalancer.chooseServer("default")).thenReturn(server);
+        when(loadBalancerContext.getServerStats(server)).thenReturn(stats);
+        when(execution.executeAsync(any(HttpRequest.class), any(byte[].class))).thenReturn(response);
+        interceptor = new AsyncLoadBalancingInterceptor(clientFactory);
+    }
+
+    @Test
+    public void shouldSendToTheChosenInstanceAndNoteCompletionWhenTheResponseArrives() throws Exception {
+        interceptor.intercept(new MockClientHttpRequest(HttpMethod.GET, new URI("http://visits-service/pets/visits?petId=1%2C2")),
+            new byte[0], execution);
+
+        ArgumentCaptor<HttpRequest> sent = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(execution).executeAsync(sent.capture(), any(byte[].class));
+        assertThat(sent.getValue().getURI()).isEqualTo(new URI("http://10.0.0.7:8081/pets/visits?petId=1%2C2"));
+        verify(loadBalancerContext).noteOpenConnection(stats);
+        verify(loadBalancerContext, never()).noteRequestCompletion(eq(stats), any(), any(Throwable.class), anyLong(), any(RetryHandler.class));
+
+        ClientHttpResponse value = mock(ClientHttpResponse.class);
+        response.set(value);
+
+        verify(loadBalancerContext).noteRequestCompletion(eq(stats), eq(value), (Throwable) isNull(), anyLong(), (RetryHandler) isNull());
+    }
+}
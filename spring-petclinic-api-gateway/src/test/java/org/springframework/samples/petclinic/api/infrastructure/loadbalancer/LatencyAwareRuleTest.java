@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.infrastructure.loadbalancer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+public class LatencyAwareRuleTest {
+
+    private final LatencyAwareRule.Ewma ewma = new LatencyAwareRule.Ewma();
+
+    @Test
+    public void shouldReportUnknownLatencyBeforeFirstSample() {
+        assertThat(ewma.update(0, 0, 1000)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldStartWithAverageOfFirstSamples() {
+        assertThat(ewma.update(4, 400, 1000)).isCloseTo(100, within(0.001));
+    }
+
+    @Test
+    public void shouldWeighNewSamplesByElapsedTime() {
+        ewma.update(1, 100, 1000);
+
+        double value = ewma.update(2, 100 + 1100, 1000 + LatencyAwareRule.DECAY_MILLIS);
+
+        // 100 / e + 1100 * (1 - 1 / e)
+        assertThat(value).isCloseTo(100 / Math.E + 1100 * (1 - 1 / Math.E), within(0.001));
+    }
+
+    @Test
+    public void shouldDecayWithoutTraffic() {
+        ewma.update(1, 100, 1000);
+
+        assertThat(ewma.update(1, 100, 1000 + LatencyAwareRule.DECAY_MILLIS)).isCloseTo(100 / Math.E, within(0.001));
+    }
+
+    @Test
+    public void shouldStartOverWhenStatisticsWereReset() {
+        ewma.update(10, 10000, 1000);
+
+        assertThat(ewma.update(1, 50, 2000)).isCloseTo(50, within(0.001));
+    }
+}
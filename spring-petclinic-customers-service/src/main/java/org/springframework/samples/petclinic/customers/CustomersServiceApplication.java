@@ -17,10 +17,13 @@ package org.springframework.samples.petclinic.customers;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.customers.system.CustomersProperties;
 import org.springframework.samples.petclinic.monitoring.MonitoringConfig;
 import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -31,6 +34,8 @@ import java.net.UnknownHostException;
 @EnableDiscoveryClient
 @SpringBootApplication
 @Import(MonitoringConfig.class)
+@EnableConfigurationProperties(CustomersProperties.class)
+@EnableScheduling
 public class CustomersServiceApplication {
 
 	public static void main(String[] args) throws UnknownHostException {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.Value;
+
+/**
+ * Outcome of a bulk import.
+ */
+@Data
+public class ImportReport {
+
+    private long ownersImported;
+
+    private long petsImported;
+
+    private long rejected;
+
+    /**
+     * The first rejected rows, see {@code customers.bulk-import.max-reported-rejections}.
+     */
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    /**
+     * Why the import stopped before the end of the input, chunks committed until then are kept.
+     */
+    private String aborted;
+
+    private long durationMillis;
+
+    private double ownersPerSecond;
+
+    void reject(final long row, final String reason, final int maxReported) {
+        rejected++;
+        if (rejections.size() < maxReported) {
+            rejections.add(new Rejection(row, reason));
+        }
+    }
+
+    void finish(final long durationNanos) {
+        durationMillis = durationNanos / 1_000_000;
+        ownersPerSecond = durationNanos > 0 ? ownersImported * 1e9 / durationNanos : 0;
+    }
+
+    @Value
+    public static class Rejection {
+        private final long row;
+        private final String reason;
+    }
+}
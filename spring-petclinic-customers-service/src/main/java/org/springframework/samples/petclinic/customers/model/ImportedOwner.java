@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+
+/**
+ * One owner with its pets as read from a bulk import, not validated yet.
+ */
+@Data
+public class ImportedOwner {
+
+    private String firstName;
+
+    private String lastName;
+
+    private String address;
+
+    private String city;
+
+    private String telephone;
+
+    private List<ImportedPet> pets = new ArrayList<>();
+
+    /**
+     * Position of the owner in the import, reported with rejections.
+     */
+    @JsonIgnore
+    private long row;
+
+    /**
+     * Set by the reader when the row could not be parsed.
+     */
+    @JsonIgnore
+    private String rejection;
+
+    @Data
+    public static class ImportedPet {
+
+        private String name;
+
+        /**
+         * ISO date, {@code yyyy-MM-dd}.
+         */
+        private String birthDate;
+
+        /**
+         * Name of the pet type, e.g. {@code cat}.
+         */
+        private String type;
+    }
+}
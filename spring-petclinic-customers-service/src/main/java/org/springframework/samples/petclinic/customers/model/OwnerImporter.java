@@ -0,0 +1,256 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.customers.system.CustomersProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk import of owners and pets with plain JDBC batches. {@code IDENTITY} ids keep Hibernate from batching
+ * inserts, so the rows are written here directly, one transaction per chunk of owners. Only the current chunk
+ * is held in memory, however large the input.
+ */
+@Slf4j
+@Component
+public class OwnerImporter {
+
+    private static final String INSERT_OWNER = "INSERT INTO owners (first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PET = "INSERT INTO pets (name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PetRepository petRepository;
+
+    private final SessionFactory sessionFactory;
+
+    private final CustomersProperties.Import config;
+
+    /**
+     * Not every driver returns the generated keys of a batch, those that don't get one insert per owner.
+     */
+    private volatile boolean batchKeysSupported = true;
+
+    @Autowired
+    public OwnerImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         PetRepository petRepository, EntityManagerFactory entityManagerFactory,
+                         CustomersProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.petRepository = petRepository;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.config = properties.getBulkImport();
+    }
+
+    public ImportReport importOwners(final Iterator<ImportedOwner> owners) {
+        final long start = System.nanoTime();
+        final ImportReport report = new ImportReport();
+        final Map<String, Integer> petTypes = new HashMap<>();
+        petRepository.findPetTypes().forEach(type -> petTypes.put(type.getName().toLowerCase(), type.getId()));
+
+        final List<ImportedOwner> chunk = new ArrayList<>(config.getChunkSize());
+        try {
+            while (owners.hasNext()) {
+                final ImportedOwner owner = owners.next();
+                final String rejection = owner.getRejection() != null ? owner.getRejection() : validate(owner, petTypes);
+                if (rejection != null) {
+                    report.reject(owner.getRow(), rejection, config.getMaxReportedRejections());
+                    continue;
+                }
+                chunk.add(owner);
+                if (chunk.size() == config.getChunkSize()) {
+                    write(chunk, petTypes, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                write(chunk, petTypes, report);
+            }
+        } catch (RuntimeException e) {
+            // a failed chunk was rolled back, the report keeps the chunks committed before it
+            log.warn("Bulk import stopped", e);
+            report.setAborted(e.getMessage());
+        }
+        report.finish(System.nanoTime() - start);
+        log.info("Imported {} owners and {} pets in {} ms, {} rows rejected",
+            report.getOwnersImported(), report.getPetsImported(), report.getDurationMillis(), report.getRejected());
+        return report;
+    }
+
+    private void write(final List<ImportedOwner> chunk, final Map<String, Integer> petTypes, final ImportReport report) {
+        int pets;
+        try {
+            pets = transactionTemplate.execute(status -> jdbcTemplate.execute((ConnectionCallback<Integer>) con -> insert(con, chunk, petTypes)));
+        } catch (BatchKeysUnsupportedException e) {
+            log.info("JDBC driver does not return generated keys of batches, inserting owners one by one");
+            batchKeysSupported = false;
+            pets = transactionTemplate.execute(status -> jdbcTemplate.execute((ConnectionCallback<Integer>) con -> insert(con, chunk, petTypes)));
+        }
+        // the rows bypassed Hibernate, so cached queries (e.g. the pets of an owner id) don't know about them
+        sessionFactory.getCache().evictQueryRegions();
+        report.setOwnersImported(report.getOwnersImported() + chunk.size());
+        report.setPetsImported(report.getPetsImported() + pets);
+    }
+
+    private int insert(final Connection con, final List<ImportedOwner> chunk, final Map<String, Integer> petTypes) throws SQLException {
+        int pets = 0;
+        try (PreparedStatement insertOwner = con.prepareStatement(INSERT_OWNER, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement insertPet = con.prepareStatement(INSERT_PET)) {
+            for (int from = 0; from < chunk.size(); from += config.getBatchSize()) {
+                final List<ImportedOwner> batch = chunk.subList(from, Math.min(chunk.size(), from + config.getBatchSize()));
+                final int[] ownerIds = batchKeysSupported ? insertOwnerBatch(insertOwner, batch) : insertOwnersOneByOne(insertOwner, batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    for (ImportedOwner.ImportedPet pet : batch.get(i).getPets()) {
+                        insertPet.setString(1, pet.getName());
+                        if (isBlank(pet.getBirthDate())) {
+                            insertPet.setNull(2, Types.DATE);
+                        } else {
+                            insertPet.setDate(2, Date.valueOf(LocalDate.parse(pet.getBirthDate())));
+                        }
+                        insertPet.setInt(3, petTypes.get(pet.getType().toLowerCase()));
+                        insertPet.setInt(4, ownerIds[i]);
+                        insertPet.addBatch();
+                        if (++pets % config.getBatchSize() == 0) {
+                            insertPet.executeBatch();
+                        }
+                    }
+                }
+            }
+            insertPet.executeBatch();
+        }
+        return pets;
+    }
+
+    private int[] insertOwnerBatch(final PreparedStatement insertOwner, final List<ImportedOwner> batch) throws SQLException {
+        for (ImportedOwner owner : batch) {
+            bindOwner(insertOwner, owner);
+            insertOwner.addBatch();
+        }
+        insertOwner.executeBatch();
+        final int[] ids = new int[batch.size()];
+        int count = 0;
+        try (ResultSet keys = insertOwner.getGeneratedKeys()) {
+            while (count < ids.length && keys.next()) {
+                ids[count++] = keys.getInt(1);
+            }
+        }
+        if (count != ids.length) {
+            throw new BatchKeysUnsupportedException();
+        }
+        return ids;
+    }
+
+    private int[] insertOwnersOneByOne(final PreparedStatement insertOwner, final List<ImportedOwner> batch) throws SQLException {
+        final int[] ids = new int[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            bindOwner(insertOwner, batch.get(i));
+            insertOwner.executeUpdate();
+            try (ResultSet keys = insertOwner.getGeneratedKeys()) {
+                keys.next();
+                ids[i] = keys.getInt(1);
+            }
+        }
+        return ids;
+    }
+
+    private static void bindOwner(final PreparedStatement insertOwner, final ImportedOwner owner) throws SQLException {
+        insertOwner.setString(1, owner.getFirstName());
+        insertOwner.setString(2, owner.getLastName());
+        insertOwner.setString(3, owner.getAddress());
+        insertOwner.setString(4, owner.getCity());
+        insertOwner.setString(5, owner.getTelephone());
+    }
+
+    /**
+     * Same rules as the validation of {@link Owner}, plus the column sizes of the schema.
+     *
+     * @return why the owner is rejected, or {@code null}
+     */
+    static String validate(final ImportedOwner owner, final Map<String, Integer> petTypes) {
+        String rejection = required("firstName", owner.getFirstName(), 30);
+        rejection = rejection != null ? rejection : required("lastName", owner.getLastName(), 30);
+        rejection = rejection != null ? rejection : required("address", owner.getAddress(), 255);
+        rejection = rejection != null ? rejection : required("city", owner.getCity(), 80);
+        rejection = rejection != null ? rejection : required("telephone", owner.getTelephone(), 10);
+        if (rejection != null) {
+            return rejection;
+        }
+        if (!owner.getTelephone().chars().allMatch(Character::isDigit)) {
+            return "telephone must be all numeric";
+        }
+        for (ImportedOwner.ImportedPet pet : owner.getPets()) {
+            rejection = required("pet name", pet.getName(), 30);
+            if (rejection != null) {
+                return rejection;
+            }
+            if (pet.getType() == null || !petTypes.containsKey(pet.getType().toLowerCase())) {
+                return "unknown pet type " + pet.getType();
+            }
+            if (!isBlank(pet.getBirthDate())) {
+                try {
+                    LocalDate.parse(pet.getBirthDate());
+                } catch (DateTimeParseException e) {
+                    return "invalid pet birth date " + pet.getBirthDate();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String required(final String field, final String value, final int maxLength) {
+        if (isBlank(value)) {
+            return field + " is required";
+        }
+        if (value.length() > maxLength) {
+            return field + " is longer than " + maxLength + " characters";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static class BatchKeysUnsupportedException extends RuntimeException {
+    }
+}
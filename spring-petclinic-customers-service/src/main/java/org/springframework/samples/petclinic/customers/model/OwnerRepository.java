@@ -15,7 +15,18 @@
  */
 package org.springframework.samples.petclinic.customers.model;
 
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant with Spring Data naming
@@ -27,4 +38,49 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @author Michael Isvy
  * @author Maciej Szarlinski
  */
-public interface OwnerRepository extends JpaRepository<Owner, Integer> { }
+public interface OwnerRepository extends JpaRepository<Owner, Integer> {
+
+    String OWNER_VIEW = "SELECT NEW org.springframework.samples.petclinic.customers.model.OwnerView("
+        + "owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone) FROM Owner owner";
+
+    /**
+     * Owner with pets and pet types, for callers that modify the owner and return it.
+     */
+    @EntityGraph(Owner.WITH_PETS)
+    Owner findWithPetsById(int id);
+
+    /**
+     * Revision of an owner and its pets. Every update of the owner or of one of its pets and every new pet increments
+     * it, so it validates {@link #findViewById(int)} without loading the owner.
+     */
+    @Query("SELECT owner.version + COUNT(pet.id) + COALESCE(SUM(pet.version), 0)"
+        + " FROM Owner owner LEFT JOIN owner.pets pet WHERE owner.id = :id GROUP BY owner.id, owner.version")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    Long findRevisionById(@Param("id") int id);
+
+    @Query(OWNER_VIEW + " WHERE owner.id = :id")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    OwnerView findViewById(@Param("id") int id);
+
+    @Query(OWNER_VIEW + " ORDER BY owner.id")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    List<OwnerView> findAllViews();
+
+    /**
+     * First owners ordered by last name and id, the prefix is a LIKE pattern escaped with {@code !}. First pages
+     * are read far more often than the following ones, so only they go to the query cache.
+     */
+    @Query(OWNER_VIEW + " WHERE owner.lastName LIKE :prefix ESCAPE '!' ORDER BY owner.lastName, owner.id")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    List<OwnerView> findByLastNamePrefix(@Param("prefix") String prefix, Pageable pageable);
+
+    /**
+     * Owners following the given one in last name and id order, seeks through the last name index instead of
+     * skipping an offset.
+     */
+    @Query(OWNER_VIEW + " WHERE owner.lastName LIKE :prefix ESCAPE '!'"
+        + " AND (owner.lastName > :lastName OR (owner.lastName = :lastName AND owner.id > :id))"
+        + " ORDER BY owner.lastName, owner.id")
+    List<OwnerView> findByLastNamePrefixAfter(@Param("prefix") String prefix, @Param("lastName") String lastName,
+                                          @Param("id") int id, Pageable pageable);
+}
@@ -15,11 +15,18 @@
  */
 package org.springframework.samples.petclinic.customers.model;
 
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 /**
@@ -35,7 +42,8 @@ import org.springframework.data.repository.query.Param;
 public interface PetRepository extends JpaRepository<Pet, Integer> {
 
     /**
-     * Retrieve all {@link PetType}s from the data store.
+     * Retrieve all {@link PetType}s from the data store. Not query cached, {@link PetTypeCache} holds the result
+     * and must see changed types when it refreshes.
      * @return a Collection of {@link PetType}s.
      */
     @Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
@@ -44,6 +52,29 @@ public interface PetRepository extends JpaRepository<Pet, Integer> {
     @Query("FROM PetType ptype WHERE ptype.id = :typeId")
     Optional<PetType> findPetTypeById(@Param("typeId") int typeId);
 
+    /**
+     * Pets of the given owners with their types, ordered by name ignoring case like {@link Owner#getPets()}.
+     */
+    @Query("SELECT NEW org.springframework.samples.petclinic.customers.model.PetView("
+        + "pet.owner.id, pet.id, pet.name, pet.birthDate, type.id, type.name)"
+        + " FROM Pet pet JOIN pet.type type WHERE pet.owner.id IN :ownerIds ORDER BY LOWER(pet.name), pet.id")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    List<PetView> findViewsByOwnerIdIn(@Param("ownerIds") Collection<Integer> ownerIds);
+
+    /**
+     * Revision of a pet as returned by {@link #findDetailsById(int)}, which includes the name of its owner.
+     */
+    @Query("SELECT pet.version + pet.owner.version FROM Pet pet WHERE pet.id = :id")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    Integer findRevisionById(@Param("id") int id);
+
+    /**
+     * Pet with owner and type in one statement, loaded read-only.
+     */
+    @Query("SELECT pet FROM Pet pet JOIN FETCH pet.owner JOIN FETCH pet.type WHERE pet.id = :id")
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    Pet findDetailsById(@Param("id") int id);
+
 
 }
 
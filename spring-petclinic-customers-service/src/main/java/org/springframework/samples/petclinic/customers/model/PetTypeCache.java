@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reference data cache of the pet types. The whole table is loaded into an immutable snapshot that is swapped
+ * on every refresh, so lookups never touch the database and never lock.
+ */
+@Slf4j
+@Component
+public class PetTypeCache {
+
+    private final PetRepository petRepository;
+
+    private final SessionFactory sessionFactory;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public PetTypeCache(PetRepository petRepository, EntityManagerFactory entityManagerFactory) {
+        this.petRepository = petRepository;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * @return all pet types ordered by name
+     */
+    public List<PetType> findAll() {
+        return snapshot().all;
+    }
+
+    public Optional<PetType> findById(final int id) {
+        final PetType[] byId = snapshot().byId;
+        return Optional.ofNullable(id >= 0 && id < byId.length ? byId[id] : null);
+    }
+
+    /**
+     * Strong validator of the current pet types, changes whenever a refresh loads different types.
+     */
+    public String getETag() {
+        return snapshot().etag;
+    }
+
+    @Scheduled(initialDelayString = "${customers.pet-types.refresh-interval:300000}",
+        fixedDelayString = "${customers.pet-types.refresh-interval:300000}")
+    public void refresh() {
+        // the second-level cache would keep serving the old types to Hibernate until they expire
+        sessionFactory.getCache().evictEntityRegion(PetType.class);
+        final List<PetType> types = petRepository.findPetTypes();
+        final int maxId = types.stream().mapToInt(PetType::getId).max().orElse(0);
+        final PetType[] byId = new PetType[maxId + 1];
+        final StringBuilder content = new StringBuilder();
+        for (PetType type : types) {
+            byId[type.getId()] = type;
+            content.append(type.getId()).append(':').append(type.getName()).append('\n');
+        }
+        final String etag = '"' + DigestUtils.md5DigestAsHex(content.toString().getBytes(UTF_8)) + '"';
+        if (snapshot == null || !etag.equals(snapshot.etag)) {
+            log.info("Loaded {} pet types", types.size());
+        }
+        snapshot = new Snapshot(Collections.unmodifiableList(types), byId, etag);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+
+        private final List<PetType> all;
+
+        private final PetType[] byId;
+
+        private final String etag;
+
+        private Snapshot(final List<PetType> all, final PetType[] byId, final String etag) {
+            this.all = all;
+            this.byId = byId;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+import lombok.Value;
+
+/**
+ * Read-only projection of a {@link Pet} and its type with the same JSON representation.
+ */
+@Data
+public class PetView {
+
+    @JsonIgnore
+    private final Integer ownerId;
+
+    private final Integer id;
+
+    private final String name;
+
+    private final Date birthDate;
+
+    private final Type type;
+
+    public PetView(Integer ownerId, Integer id, String name, Date birthDate, Integer typeId, String typeName) {
+        this.ownerId = ownerId;
+        this.id = id;
+        this.name = name;
+        this.birthDate = birthDate;
+        this.type = new Type(typeId, typeName);
+    }
+
+    @Value
+    public static class Type {
+        private final Integer id;
+        private final String name;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.system;
+
+import lombok.Data;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.samples.petclinic.jdbc.ReadWriteSplitProperties;
+
+/**
+ * Typesafe custom configuration.
+ */
+@Data
+@ConfigurationProperties(prefix = "customers")
+public class CustomersProperties {
+
+    private Import bulkImport = new Import();
+
+    private PetTypes petTypes = new PetTypes();
+
+    private PetSaves petSaves = new PetSaves();
+
+    private ReadWriteSplitProperties readWriteSplit = new ReadWriteSplitProperties();
+
+    /**
+     * Bulk import of owners and pets.
+     */
+    @Data
+    public static class Import {
+
+        /**
+         * Rows sent to the database in one JDBC batch.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Owners committed in one transaction. Also the number of parsed rows held in memory.
+         */
+        private int chunkSize = 5000;
+
+        /**
+         * Rejected rows listed in the report, further rejections are only counted.
+         */
+        private int maxReportedRejections = 100;
+    }
+
+    /**
+     * Reference data cache of the pet types.
+     */
+    @Data
+    public static class PetTypes {
+
+        /**
+         * Milliseconds between two reloads of the pet types.
+         */
+        private long refreshInterval = 300_000;
+
+        /**
+         * Seconds browsers and the gateway may reuse the pet types without asking again.
+         */
+        private long maxAge = 3600;
+    }
+
+    /**
+     * Queue of pet saves processed off the request threads.
+     */
+    @Data
+    public static class PetSaves {
+
+        /**
+         * Worker threads processing pet saves.
+         */
+        private int threads = 4;
+
+        /**
+         * Pet saves waiting for a worker, further saves are refused with 503.
+         */
+        private int queueCapacity = 100;
+
+        /**
+         * Milliseconds the status of a completed save can still be polled.
+         */
+        private long statusRetention = 600_000;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.system;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Exports the statistics of the Hibernate second-level cache regions and the query cache through OpenCensus.
+ * The hit ratio covers the hits and misses since the previous export.
+ */
+@Component
+class HibernateCacheMonitor {
+
+    private static final TagKey KEY_REGION = TagKey.create("region");
+
+    private static final String QUERIES = "queries";
+
+    private final Measure.MeasureLong hits = OpenCensusService.getInstance()
+        .registerGauge("hibernate_cache_hits", "Cache hits since startup", "1", KEY_REGION);
+
+    private final Measure.MeasureLong misses = OpenCensusService.getInstance()
+        .registerGauge("hibernate_cache_misses", "Cache misses since startup", "1", KEY_REGION);
+
+    private final Measure.MeasureLong hitRatio = OpenCensusService.getInstance()
+        .registerGauge("hibernate_cache_hit_ratio", "Share of cache lookups answered from the cache", "%", KEY_REGION);
+
+    private final Measure.MeasureLong entries = OpenCensusService.getInstance()
+        .registerGauge("hibernate_cache_entries", "Entries held in memory", "1", KEY_REGION);
+
+    private final Statistics statistics;
+
+    private final Map<String, long[]> previous = new HashMap<>();
+
+    @Autowired
+    HibernateCacheMonitor(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Scheduled(fixedDelayString = "${customers.cache.monitor-interval:10000}")
+    void export() {
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            record(region, regionStatistics.getHitCount(), regionStatistics.getMissCount());
+            OpenCensusService.getInstance().record(entries, regionStatistics.getElementCountInMemory(), KEY_REGION, region);
+        }
+        record(QUERIES, statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+    }
+
+    private void record(String region, long hitCount, long missCount) {
+        OpenCensusService.getInstance().record(hits, hitCount, KEY_REGION, region);
+        OpenCensusService.getInstance().record(misses, missCount, KEY_REGION, region);
+
+        long[] last = previous.getOrDefault(region, new long[2]);
+        long lookups = hitCount - last[0] + missCount - last[1];
+        if (lookups > 0) {
+            OpenCensusService.getInstance().record(hitRatio, (hitCount - last[0]) * 100 / lookups, KEY_REGION, region);
+        }
+        previous.put(region, new long[] {hitCount, missCount});
+    }
+}
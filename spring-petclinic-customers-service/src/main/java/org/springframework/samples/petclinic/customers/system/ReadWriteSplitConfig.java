@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.system;
+
+import java.io.IOException;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.samples.petclinic.jdbc.ReadWriteRoutingDataSource;
+import org.springframework.samples.petclinic.jdbc.ReadWriteSplitDataSources;
+
+/**
+ * Replaces the auto-configured {@code DataSource} with one routing read-only transactions to the replicas, see
+ * {@link ReadWriteRoutingDataSource}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customers.read-write-split", name = "enabled")
+class ReadWriteSplitConfig {
+
+    @Bean
+    @Primary
+    DataSource dataSource(DataSourceProperties properties, CustomersProperties customersProperties,
+                          ResourceLoader resourceLoader) throws IOException {
+        return ReadWriteSplitDataSources.create(properties, customersProperties.getReadWriteSplit(), resourceLoader);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.samples.petclinic.customers.model.ImportedOwner;
+
+/**
+ * Reads owners from CSV with the columns {@code firstName,lastName,address,city,telephone} optionally followed by
+ * {@code petName,petBirthDate,petType}. A line whose owner columns are all empty adds one more pet to the owner
+ * above it. Values may be double-quoted, a quoted value can't span lines. A header line is skipped.
+ */
+class CsvOwnerImportReader implements Iterator<ImportedOwner> {
+
+    private static final int OWNER_COLUMNS = 5;
+
+    private static final int PET_COLUMNS = 3;
+
+    private final BufferedReader reader;
+
+    private long row;
+
+    private List<String> line;
+
+    CsvOwnerImportReader(final BufferedReader reader) {
+        this.reader = reader;
+        this.line = readLine();
+        if (line != null && "firstName".equalsIgnoreCase(line.get(0))) {
+            line = readLine();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return line != null;
+    }
+
+    @Override
+    public ImportedOwner next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final ImportedOwner owner = new ImportedOwner();
+        owner.setRow(row);
+        if (line.size() != OWNER_COLUMNS && line.size() != OWNER_COLUMNS + PET_COLUMNS) {
+            owner.setRejection("expected " + OWNER_COLUMNS + " or " + (OWNER_COLUMNS + PET_COLUMNS) + " columns but got " + line.size());
+        } else if (isPetOnly(line)) {
+            owner.setRejection("pet without an owner");
+        } else {
+            owner.setFirstName(line.get(0));
+            owner.setLastName(line.get(1));
+            owner.setAddress(line.get(2));
+            owner.setCity(line.get(3));
+            owner.setTelephone(line.get(4));
+        }
+        do {
+            addPet(owner, line);
+            line = readLine();
+        } while (line != null && isPetOnly(line));
+        return owner;
+    }
+
+    private static boolean isPetOnly(final List<String> columns) {
+        return columns.size() == OWNER_COLUMNS + PET_COLUMNS
+            && columns.subList(0, OWNER_COLUMNS).stream().allMatch(String::isEmpty);
+    }
+
+    private static void addPet(final ImportedOwner owner, final List<String> columns) {
+        if (columns.size() != OWNER_COLUMNS + PET_COLUMNS) {
+            return;
+        }
+        final ImportedOwner.ImportedPet pet = new ImportedOwner.ImportedPet();
+        pet.setName(columns.get(5));
+        pet.setBirthDate(columns.get(6));
+        pet.setType(columns.get(7));
+        owner.getPets().add(pet);
+    }
+
+    private List<String> readLine() {
+        String text;
+        try {
+            do {
+                text = reader.readLine();
+                row++;
+            } while (text != null && text.trim().isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable CSV at row " + row, e);
+        }
+        return text == null ? null : split(text);
+    }
+
+    static List<String> split(final String text) {
+        final List<String> columns = new ArrayList<>(OWNER_COLUMNS + PET_COLUMNS);
+        final StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        columns.add(value.toString().trim());
+        return columns;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.springframework.samples.petclinic.customers.model.ImportedOwner;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Reads a JSON array of owners one element at a time, the array itself is never materialized.
+ */
+class JsonOwnerImportReader implements Iterator<ImportedOwner> {
+
+    private final JsonParser parser;
+
+    private final ObjectReader reader;
+
+    private long row;
+
+    private JsonToken next;
+
+    JsonOwnerImportReader(final ObjectMapper mapper, final InputStream body) throws IOException {
+        this.parser = mapper.getFactory().createParser(body);
+        this.reader = mapper.readerFor(ImportedOwner.class);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new OwnerImportResource.ImportParseException("Expected a JSON array of owners");
+            }
+            this.next = parser.nextToken();
+        } catch (JsonProcessingException e) {
+            throw new OwnerImportResource.ImportParseException("Unreadable JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next == JsonToken.START_OBJECT;
+    }
+
+    @Override
+    public ImportedOwner next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        row++;
+        ImportedOwner owner;
+        try {
+            // read the element as a tree first, so an element that doesn't bind leaves the parser after it
+            final TreeNode element = parser.readValueAsTree();
+            try {
+                owner = reader.readValue(reader.treeAsTokens(element));
+            } catch (JsonProcessingException e) {
+                owner = new ImportedOwner();
+                owner.setRejection(e.getOriginalMessage());
+            }
+            next = parser.nextToken();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable JSON at row " + row, e);
+        }
+        owner.setRow(row);
+        return owner;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.customers.model.ImportReport;
+import org.springframework.samples.petclinic.customers.model.OwnerImporter;
+import org.springframework.samples.petclinic.monitoring.Monitored;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bulk import of owners with their pets. The body is streamed into the importer, so the import of a large
+ * file neither buffers the request nor holds the parsed owners in memory.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+class OwnerImportResource {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final OwnerImporter ownerImporter;
+
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(value = "/owners/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Monitored
+    public ImportReport importJson(InputStream body) throws IOException {
+        return ownerImporter.importOwners(new JsonOwnerImportReader(objectMapper, body));
+    }
+
+    @PostMapping(value = "/owners/import", consumes = TEXT_CSV_VALUE)
+    @Monitored
+    public ImportReport importCsv(InputStream body) {
+        return ownerImporter.importOwners(new CsvOwnerImportReader(new BufferedReader(new InputStreamReader(body, UTF_8))));
+    }
+
+    @ExceptionHandler(ImportParseException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void onInvalidBody() {
+    }
+
+    /**
+     * The body can't be read as owners at all, unlike single rows that are rejected in the {@link ImportReport}.
+     */
+    static class ImportParseException extends RuntimeException {
+
+        ImportParseException(String message) {
+            super(message);
+        }
+    }
+}
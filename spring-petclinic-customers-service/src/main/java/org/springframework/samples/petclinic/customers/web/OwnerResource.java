@@ -15,25 +15,43 @@
  */
 package org.springframework.samples.petclinic.customers.web;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.samples.petclinic.customers.model.Owner;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.PetRepository;
+import org.springframework.samples.petclinic.customers.model.PetView;
 import org.springframework.samples.petclinic.monitoring.Monitored;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -49,8 +67,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 class OwnerResource {
 
+    static final int MAX_PAGE_SIZE = 100;
+
     private final OwnerRepository ownerRepository;
 
+    private final PetRepository petRepository;
+
     /**
      * Create Owner
      */
@@ -62,19 +84,90 @@ class OwnerResource {
     }
 
     /**
-     * Read single Owner
+     * Read single Owner, or 304 when the client has its current revision
      */
     @GetMapping(value = "/{ownerId}")
-    public Owner findOwner(@PathVariable("ownerId") int ownerId) {
-        return ownerRepository.findOne(ownerId);
+    @Transactional(readOnly = true)
+    public OwnerView findOwner(@PathVariable("ownerId") int ownerId, WebRequest request) {
+        final Long revision = ownerRepository.findRevisionById(ownerId);
+        if (revision != null && request.checkNotModified(revision.toString())) {
+            return null;
+        }
+        final OwnerView owner = ownerRepository.findViewById(ownerId);
+        if (owner != null) {
+            withPets(singletonList(owner));
+        }
+        return owner;
     }
 
     /**
      * Read List of Owners
      */
     @GetMapping
-    public List<Owner> findAll() {
-        return ownerRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<OwnerView> findAll() {
+        return withPets(ownerRepository.findAllViews());
+    }
+
+    /**
+     * Read a page of Owners ordered by last name, optionally only those whose last name starts with the given prefix.
+     * The next page starts after the owner encoded in the cursor of the previous one.
+     */
+    @GetMapping(params = "size")
+    @Transactional(readOnly = true)
+    public OwnerPage findPage(@RequestParam("size") int size,
+                              @RequestParam(value = "lastName", defaultValue = "") String lastName,
+                              @RequestParam(value = "cursor", required = false) String cursor) {
+        final int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        final String prefix = lastName.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        // one more than requested tells whether there is a next page
+        final PageRequest limit = new PageRequest(0, pageSize + 1);
+
+        final List<OwnerView> owners;
+        if (cursor == null || cursor.isEmpty()) {
+            owners = ownerRepository.findByLastNamePrefix(prefix, limit);
+        } else {
+            final String[] after;
+            final int afterId;
+            try {
+                after = new String(Base64.getUrlDecoder().decode(cursor), UTF_8).split(":", 2);
+                if (after.length != 2) {
+                    throw new InvalidCursorException(cursor);
+                }
+                afterId = Integer.parseInt(after[0]);
+            } catch (IllegalArgumentException e) {
+                // not Base64 or not a number
+                throw new InvalidCursorException(cursor);
+            }
+            owners = ownerRepository.findByLastNamePrefixAfter(prefix, after[1], afterId, limit);
+        }
+
+        if (owners.size() <= pageSize) {
+            return new OwnerPage(withPets(owners), null);
+        }
+        final OwnerView last = owners.get(pageSize - 1);
+        final String nextCursor = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((last.getId() + ":" + last.getLastName()).getBytes(UTF_8));
+        return new OwnerPage(withPets(new ArrayList<>(owners.subList(0, pageSize))), nextCursor);
+    }
+
+    /**
+     * Adds the pets of all given owners with a single query.
+     */
+    private List<OwnerView> withPets(final List<OwnerView> owners) {
+        if (owners.isEmpty()) {
+            return owners;
+        }
+        final Map<Integer, OwnerView> byId = owners.stream().collect(toMap(OwnerView::getId, Function.identity()));
+        for (PetView pet : petRepository.findViewsByOwnerIdIn(byId.keySet())) {
+            byId.get(pet.getOwnerId()).getPets().add(pet);
+        }
+        return owners;
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void onInvalidCursor() {
     }
 
     /**
@@ -83,7 +176,7 @@ class OwnerResource {
     @PutMapping(value = "/{ownerId}")
     @Monitored
     public Owner updateOwner(@PathVariable("ownerId") int ownerId, @Valid @RequestBody Owner ownerRequest) {
-        final Owner ownerModel = ownerRepository.findOne(ownerId);
+        final Owner ownerModel = ownerRepository.findWithPetsById(ownerId);
         // This is done by hand for simplicity purpose. In a real life use-case we should consider using MapStruct.
         ownerModel.setFirstName(ownerRequest.getFirstName());
         ownerModel.setLastName(ownerRequest.getLastName());
@@ -93,4 +186,21 @@ class OwnerResource {
         log.info("Saving owner {}", ownerModel);
         return ownerRepository.save(ownerModel);
     }
+
+    @Value
+    static class OwnerPage {
+        private final List<OwnerView> items;
+
+        /**
+         * Absent on the last page.
+         */
+        private final String nextCursor;
+    }
+
+    public static class InvalidCursorException extends RuntimeException {
+
+        public InvalidCursorException(String cursor) {
+            super("Invalid cursor " + cursor);
+        }
+    }
 }
@@ -16,14 +16,18 @@
 package org.springframework.samples.petclinic.customers.web;
 
 import lombok.RequiredArgsConstructor;
-import io.opencensus.common.Scope;
-import org.springframework.samples.petclinic.opencensus.OpenCensusService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.customers.model.*;
+import org.springframework.samples.petclinic.customers.system.CustomersProperties;
 import org.springframework.samples.petclinic.monitoring.Monitored;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -41,64 +45,72 @@ class PetResource {
 
     private final PetRepository petRepository;
 
-    private final OwnerRepository ownerRepository;
+    private final PetTypeCache petTypeCache;
 
+    private final PetSaveQueue petSaveQueue;
+
+    private final CustomersProperties properties;
+
+    /**
+     * Served from the reference data cache. The ETag lets clients revalidate with a 304 once the max age is over.
+     */
     @GetMapping("/petTypes")
-    public List<PetType> getPetTypes() {
-        return petRepository.findPetTypes();
+    public ResponseEntity<List<PetType>> getPetTypes() {
+        return ResponseEntity.ok()
+            .eTag(petTypeCache.getETag())
+            .cacheControl(CacheControl.maxAge(properties.getPetTypes().getMaxAge(), TimeUnit.SECONDS).cachePublic())
+            .body(petTypeCache.findAll());
     }
 
-    @PostMapping("/owners/{ownerId}/pets")
+    /**
+     * Reloads the pet types after the {@code types} table was changed.
+     */
+    @PostMapping("/petTypes/refresh")
     @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void refreshPetTypes() {
+        petTypeCache.refresh();
+    }
+
+    /**
+     * Queues the new pet, see {@link #getSaveStatus(String)} for the outcome.
+     */
+    @PostMapping("/owners/{ownerId}/pets")
+    @ResponseStatus(HttpStatus.ACCEPTED)
     @Monitored
-    public void processCreationForm(
+    public PetSaveStatus processCreationForm(
         @RequestBody PetRequest petRequest,
         @PathVariable("ownerId") int ownerId) {
 
-        final Pet pet = new Pet();
-        final Owner owner = ownerRepository.findOne(ownerId);
-        owner.addPet(pet);
-
-        save(pet, petRequest);
+        return petSaveQueue.submit(ownerId, petRequest);
     }
 
     @PutMapping("/owners/*/pets/{petId}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @ResponseStatus(HttpStatus.ACCEPTED)
     @Monitored
-    public void processUpdateForm(@RequestBody PetRequest petRequest) {
-        save(petRepository.findOne(petRequest.getId()), petRequest);
+    public PetSaveStatus processUpdateForm(@RequestBody PetRequest petRequest) {
+        return petSaveQueue.submit(null, petRequest);
     }
 
-    private void save(final Pet pet, final PetRequest petRequest) {
-
-        try(Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("PetResource.save").startScopedSpan()) {
-
-            pet.setName(petRequest.getName());
-            pet.setBirthDate(petRequest.getBirthDate());
-
-            // only do that is we have a "Snake" (type 4)
-            if (petRequest.getTypeId() == 4) {
-                try {
-                    TimeUnit.SECONDS.sleep(2);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-
-            petRepository.findPetTypeById(petRequest.getTypeId())
-                .ifPresent(pet::setType);
+    @GetMapping("/petSaves/{id}")
+    public ResponseEntity<PetSaveStatus> getSaveStatus(@PathVariable("id") String id) {
+        return petSaveQueue.getStatus(id)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
 
-            log.info("Saving pet {}", pet);
-            petRepository.save(pet);
-            OpenCensusService.getInstance().getTracer().getCurrentSpan().addAnnotation("Saving PetId " + petRequest.getTypeId());
-        
-        }
-    
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void onQueueFull() {
     }
 
     @GetMapping("owners/*/pets/{petId}")
-    public PetDetails findPet(@PathVariable("petId") int petId) {
-        return new PetDetails(petRepository.findOne(petId));
+    @Transactional(readOnly = true)
+    public PetDetails findPet(@PathVariable("petId") int petId, WebRequest request) {
+        final Integer revision = petRepository.findRevisionById(petId);
+        if (revision != null && request.checkNotModified(revision.toString())) {
+            return null;
+        }
+        return new PetDetails(petRepository.findDetailsById(petId));
     }
 
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.Pet;
+import org.springframework.samples.petclinic.customers.model.PetRepository;
+import org.springframework.samples.petclinic.customers.model.PetTypeCache;
+import org.springframework.samples.petclinic.customers.system.CustomersProperties;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.opencensus.common.Scope;
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Processes pet saves on the bounded {@code petSaveExecutor}, so a slow save never holds a request thread.
+ * A save that finds the queue full is refused instead of waiting.
+ */
+@Slf4j
+@Component
+class PetSaveQueue {
+
+    private static final TagKey KEY_OUTCOME = TagKey.create("outcome");
+
+    private final Measure.MeasureLong queueDepth = OpenCensusService.getInstance()
+        .registerGauge("pet_save_queue_depth", "Pet saves waiting for a worker", "1");
+
+    private final Measure.MeasureLong rejections = OpenCensusService.getInstance()
+        .registerCounter("pet_save_rejections", "Pet saves refused because the queue was full", "1");
+
+    private final Measure.MeasureDouble latency = OpenCensusService.getInstance()
+        .registerDistribution("pet_save_latency", "Time from accepting a pet save until it completed", "ms", KEY_OUTCOME);
+
+    private final Map<String, PetSaveStatus> statuses = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskExecutor petSaveExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PetRepository petRepository;
+
+    private final OwnerRepository ownerRepository;
+
+    private final PetTypeCache petTypeCache;
+
+    private final CustomersProperties.PetSaves config;
+
+    @Autowired
+    PetSaveQueue(ThreadPoolTaskExecutor petSaveExecutor, PlatformTransactionManager transactionManager,
+                 PetRepository petRepository, OwnerRepository ownerRepository, PetTypeCache petTypeCache,
+                 CustomersProperties properties) {
+        this.petSaveExecutor = petSaveExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.petRepository = petRepository;
+        this.ownerRepository = ownerRepository;
+        this.petTypeCache = petTypeCache;
+        this.config = properties.getPetSaves();
+    }
+
+    /**
+     * @param ownerId owner of a new pet, {@code null} to update the pet {@link PetRequest#getId()}
+     * @throws TaskRejectedException when the queue is full
+     */
+    PetSaveStatus submit(final Integer ownerId, final PetRequest petRequest) {
+        final PetSaveStatus status = new PetSaveStatus(UUID.randomUUID().toString());
+        statuses.put(status.getId(), status);
+        try {
+            petSaveExecutor.execute(() -> process(status, ownerId, petRequest));
+        } catch (TaskRejectedException e) {
+            statuses.remove(status.getId());
+            OpenCensusService.getInstance().record(rejections, 1);
+            throw e;
+        }
+        recordQueueDepth();
+        return status;
+    }
+
+    Optional<PetSaveStatus> getStatus(final String id) {
+        return Optional.ofNullable(statuses.get(id));
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    void expireStatuses() {
+        final long expiredBefore = System.currentTimeMillis() - config.getStatusRetention();
+        statuses.values().removeIf(status -> status.getCompletedMillis() != 0 && status.getCompletedMillis() < expiredBefore);
+    }
+
+    private void process(final PetSaveStatus status, final Integer ownerId, final PetRequest petRequest) {
+        status.setState(PetSaveStatus.State.RUNNING);
+        recordQueueDepth();
+        try (Scope ss = OpenCensusService.getInstance().getTracer().getSpanBuilder("PetSaveQueue.save").startScopedSpan()) {
+            status.setPetId(transactionTemplate.execute(tx -> save(ownerId, petRequest)));
+            status.setState(PetSaveStatus.State.DONE);
+        } catch (RuntimeException e) {
+            log.warn("Saving pet {} failed", petRequest, e);
+            status.setError(e.getMessage());
+            status.setState(PetSaveStatus.State.FAILED);
+        }
+        status.setCompletedMillis(System.currentTimeMillis());
+        OpenCensusService.getInstance().record(latency, (System.nanoTime() - status.getSubmittedNanos()) / 1e6,
+            KEY_OUTCOME, status.getState().name().toLowerCase());
+    }
+
+    private Integer save(final Integer ownerId, final PetRequest petRequest) {
+        final Pet pet;
+        if (ownerId != null) {
+            final Owner owner = ownerRepository.findOne(ownerId);
+            if (owner == null) {
+                throw new IllegalArgumentException("Owner " + ownerId + " not found");
+            }
+            pet = new Pet();
+            owner.addPet(pet);
+        } else {
+            pet = petRepository.findOne(petRequest.getId());
+            if (pet == null) {
+                throw new IllegalArgumentException("Pet " + petRequest.getId() + " not found");
+            }
+        }
+
+        pet.setName(petRequest.getName());
+        pet.setBirthDate(petRequest.getBirthDate());
+
+        // only do that is we have a "Snake" (type 4)
+        if (petRequest.getTypeId() == 4) {
+            try {
+                TimeUnit.SECONDS.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while validating pet", e);
+            }
+        }
+
+        petTypeCache.findById(petRequest.getTypeId())
+            .ifPresent(pet::setType);
+
+        log.info("Saving pet {}", pet);
+        petRepository.save(pet);
+        OpenCensusService.getInstance().getTracer().getCurrentSpan().addAnnotation("Saving PetId " + petRequest.getTypeId());
+        return pet.getId();
+    }
+
+    private void recordQueueDepth() {
+        OpenCensusService.getInstance().record(queueDepth, petSaveExecutor.getThreadPoolExecutor().getQueue().size());
+    }
+}
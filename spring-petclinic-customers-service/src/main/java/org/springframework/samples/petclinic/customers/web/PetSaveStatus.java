@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+
+/**
+ * Progress of a queued pet save, polled at {@code /petSaves/{id}}.
+ */
+@Data
+class PetSaveStatus {
+
+    enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+
+    private volatile State state = State.QUEUED;
+
+    private volatile Integer petId;
+
+    private volatile String error;
+
+    @JsonIgnore
+    private final long submittedNanos = System.nanoTime();
+
+    @JsonIgnore
+    private volatile long completedMillis;
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.customers.model.ImportReport;
+import org.springframework.samples.petclinic.customers.model.OwnerImporter;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.PetRepository;
+import org.springframework.samples.petclinic.customers.model.PetView;
+import org.springframework.samples.petclinic.customers.system.CustomersProperties;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+public class OwnerImportResourceDatabaseTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    OwnerRepository ownerRepository;
+
+    @Autowired
+    PetRepository petRepository;
+
+    OwnerImportResource ownerImportResource;
+
+    OwnerResource ownerResource;
+
+    @Before
+    public void setup() {
+        CustomersProperties properties = new CustomersProperties();
+        properties.getBulkImport().setBatchSize(2);
+        properties.getBulkImport().setChunkSize(3);
+        OwnerImporter importer = new OwnerImporter(new JdbcTemplate(dataSource), transactionManager, petRepository,
+            entityManagerFactory, properties);
+        ownerImportResource = new OwnerImportResource(importer, new ObjectMapper());
+        ownerResource = new OwnerResource(ownerRepository, petRepository);
+    }
+
+    @Test
+    public void shouldImportCsvAcrossBatchesAndChunks() {
+        ImportReport report = ownerImportResource.importCsv(body(
+            "firstName,lastName,address,city,telephone,petName,petBirthDate,petType\n" +
+            "Ada,Importer1,1 Main St.,Madison,6085550001,Rex,2015-03-01,dog\n" +
+            ",,,,,Tom,,cat\n" +
+            "Bob,Importer2,\"2 Main St., Apt 3\",Madison,6085550002\n" +
+            "Cy,Importer3,3 Main St.,Madison,not-a-number\n" +
+            "Di,Importer4,4 Main St.,Madison,6085550004,Polly,2016-02-30,bird\n" +
+            "Ed,Importer5,5 Main St.,Madison,6085550005,Nemo,2017-01-01,fish\n" +
+            "Flo,Importer6,6 Main St.,Madison,6085550006\n" +
+            "Gus,Importer7,7 Main St.,Madison,6085550007,Slim,2014-05-05,snake\n"));
+
+        assertThat(report.getOwnersImported()).isEqualTo(4);
+        assertThat(report.getPetsImported()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(3);
+        assertThat(report.getRejections()).extracting(ImportReport.Rejection::getRow).containsExactly(5L, 6L, 7L);
+        assertThat(report.getAborted()).isNull();
+
+        OwnerResource.OwnerPage page = ownerResource.findPage(10, "Importer", null);
+        assertThat(page.getItems()).extracting(OwnerView::getLastName)
+            .containsExactly("Importer1", "Importer2", "Importer6", "Importer7");
+        assertThat(page.getItems().get(0).getPets()).extracting(PetView::getName).containsExactly("Rex", "Tom");
+        assertThat(page.getItems().get(1).getAddress()).isEqualTo("2 Main St., Apt 3");
+    }
+
+    @Test
+    public void shouldImportJsonAndRejectUnboundElements() throws IOException {
+        ImportReport report = ownerImportResource.importJson(body("[" +
+            "{\"firstName\":\"Ann\",\"lastName\":\"Jsonimport\",\"address\":\"1 Elm St.\",\"city\":\"Monona\",\"telephone\":\"6085551111\"," +
+            "\"pets\":[{\"name\":\"Kit\",\"birthDate\":\"2018-06-01\",\"type\":\"Cat\"}]}," +
+            "{\"firstName\":\"Bea\",\"lastName\":\"Jsonimport\",\"pets\":\"none\"}," +
+            "{\"firstName\":\"Cal\",\"lastName\":\"Jsonimport\",\"address\":\"3 Elm St.\",\"city\":\"Monona\",\"telephone\":\"6085553333\"}" +
+            "]"));
+
+        assertThat(report.getOwnersImported()).isEqualTo(2);
+        assertThat(report.getPetsImported()).isEqualTo(1);
+        assertThat(report.getRejections()).extracting(ImportReport.Rejection::getRow).containsExactly(2L);
+        assertThat(ownerResource.findPage(10, "Jsonimport", null).getItems()).hasSize(2);
+    }
+
+    @Test(expected = OwnerImportResource.ImportParseException.class)
+    public void shouldRefuseJsonThatIsNoArray() throws IOException {
+        ownerImportResource.importJson(body("{\"firstName\":\"Ann\"}"));
+    }
+
+    @Test(expected = OwnerImportResource.ImportParseException.class)
+    public void shouldRefuseMalformedJson() throws IOException {
+        ownerImportResource.importJson(body("}"));
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.PetRepository;
+import org.springframework.samples.petclinic.customers.model.PetView;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.ServletWebRequest;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+public class OwnerResourceDatabaseTest {
+
+    @Autowired
+    OwnerRepository ownerRepository;
+
+    @Autowired
+    PetRepository petRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    OwnerResource ownerResource;
+
+    @Before
+    public void setup() {
+        ownerResource = new OwnerResource(ownerRepository, petRepository);
+    }
+
+    @Test
+    public void shouldPageThroughOwnersOrderedByLastName() {
+        OwnerResource.OwnerPage first = ownerResource.findPage(3, "", null);
+        assertThat(first.getItems()).extracting(OwnerView::getLastName).containsExactly("Black", "Coleman", "Davis");
+        assertThat(first.getNextCursor()).isNotNull();
+
+        OwnerResource.OwnerPage second = ownerResource.findPage(3, "", first.getNextCursor());
+        assertThat(second.getItems()).extracting(OwnerView::getLastName).containsExactly("Davis", "Escobito", "Estaban");
+        assertThat(second.getItems()).extracting(OwnerView::getId).startsWith(4);
+    }
+
+    @Test
+    public void shouldRejectInvalidCursors() {
+        assertThatThrownBy(() -> ownerResource.findPage(3, "", "not base64!"))
+            .isInstanceOf(OwnerResource.InvalidCursorException.class);
+        assertThatThrownBy(() -> ownerResource.findPage(3, "", "eDpEYXZpcw"))
+            .isInstanceOf(OwnerResource.InvalidCursorException.class);
+    }
+
+    @Test
+    public void shouldFilterByLastNamePrefix() {
+        OwnerResource.OwnerPage page = ownerResource.findPage(10, "Es", null);
+
+        assertThat(page.getItems()).extracting(OwnerView::getLastName).containsExactly("Escobito", "Estaban");
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldReadOwnerWithPetsAndTypes() {
+        OwnerView owner = ownerResource.findOwner(6, request());
+
+        assertThat(owner.getLastName()).isEqualTo("Coleman");
+        assertThat(owner.getPets()).extracting(PetView::getName).containsExactly("Max", "Samantha");
+        assertThat(owner.getPets()).extracting(pet -> pet.getType().getName()).containsOnly("cat");
+    }
+
+    @Test
+    public void shouldTreatWildcardsLiterally() {
+        assertThat(ownerResource.findPage(10, "%", null).getItems()).isEmpty();
+    }
+
+    @Test
+    public void shouldServeHotOwnerFromQueryCache() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ownerResource.findOwner(7, request());
+        long statements = statistics.getPrepareStatementCount();
+
+        OwnerView owner = ownerResource.findOwner(7, request());
+
+        assertThat(owner.getPets()).isNotEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedForCurrentRevision() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ownerResource.findOwner(6, new ServletWebRequest(new MockHttpServletRequest("GET", "/owners/6"), response));
+        String etag = response.getHeader("ETag");
+        assertThat(etag).isNotNull();
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/owners/6");
+        revalidation.addHeader("If-None-Match", etag);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+
+        assertThat(ownerResource.findOwner(6, new ServletWebRequest(revalidation, notModified))).isNull();
+        assertThat(notModified.getStatus()).isEqualTo(304);
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/owners"));
+    }
+}
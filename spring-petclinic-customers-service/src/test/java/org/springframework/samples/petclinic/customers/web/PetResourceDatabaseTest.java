@@ -7,15 +7,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.samples.petclinic.customers.model.Owner;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
 import org.springframework.samples.petclinic.customers.model.Pet;
 import org.springframework.samples.petclinic.customers.model.PetRepository;
 import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetView;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -37,9 +40,21 @@ public class PetResourceDatabaseTest {
     @Autowired
     OwnerRepository ownerRepository;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Test
     public void shouldGetAPet() throws Exception {
         Pet pet = petRepository.findOne(2);
         assertThat(petRepository.findAll()).contains(pet);
     }
+
+    @Test
+    public void shouldListPetsOfOwnersByNameIgnoringCase() throws Exception {
+        jdbcTemplate.update("INSERT INTO pets VALUES (14, 'bella', '2013-01-01', 2, 10, 0)");
+
+        assertThat(petRepository.findViewsByOwnerIdIn(singletonList(10)))
+            .extracting(PetView::getName)
+            .containsExactly("bella", "Lucky", "Sly");
+    }
 }
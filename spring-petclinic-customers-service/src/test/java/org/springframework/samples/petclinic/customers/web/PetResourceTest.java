@@ -1,22 +1,31 @@
 package org.springframework.samples.petclinic.customers.web;
 
+import static java.util.Collections.singletonList;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.Optional;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.customers.model.Owner;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
 import org.springframework.samples.petclinic.customers.model.Pet;
 import org.springframework.samples.petclinic.customers.model.PetRepository;
 import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetTypeCache;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -38,12 +47,18 @@ public class PetResourceTest {
     @MockBean
     OwnerRepository ownerRepository;
 
+    @MockBean
+    PetTypeCache petTypeCache;
+
+    @MockBean
+    PetSaveQueue petSaveQueue;
+
     @Test
     public void shouldGetAPetInJSonFormat() throws Exception {
 
         Pet pet = setupPet();
 
-        given(petRepository.findOne(2)).willReturn(pet);
+        given(petRepository.findDetailsById(2)).willReturn(pet);
 
 
         mvc.perform(get("/owners/2/pets/2.json").accept(MediaType.APPLICATION_JSON))
@@ -54,6 +69,51 @@ public class PetResourceTest {
             .andExpect(jsonPath("$.type.id").value(6));
     }
 
+    @Test
+    public void shouldServePetTypesWithETag() throws Exception {
+        PetType petType = new PetType();
+        petType.setId(6);
+        given(petTypeCache.findAll()).willReturn(singletonList(petType));
+        given(petTypeCache.getETag()).willReturn("\"42\"");
+
+        mvc.perform(get("/petTypes").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"42\""))
+            .andExpect(header().string("Cache-Control", "max-age=3600, public"))
+            .andExpect(jsonPath("$[0].id").value(6));
+
+        mvc.perform(get("/petTypes").header("If-None-Match", "\"42\""))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void shouldAcceptPetSaveAndExposeItsStatus() throws Exception {
+        PetSaveStatus status = new PetSaveStatus("42");
+        given(petSaveQueue.submit(eq(1), any(PetRequest.class))).willReturn(status);
+        given(petSaveQueue.getStatus("42")).willReturn(Optional.of(status));
+
+        mvc.perform(post("/owners/1/pets").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"name\":\"Basil\",\"typeId\":4}"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.id").value("42"))
+            .andExpect(jsonPath("$.state").value("QUEUED"));
+
+        mvc.perform(get("/petSaves/42"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.state").value("QUEUED"));
+        mvc.perform(get("/petSaves/43"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldRefusePetSaveWhenQueueIsFull() throws Exception {
+        given(petSaveQueue.submit(eq(1), any(PetRequest.class))).willThrow(new TaskRejectedException("full"));
+
+        mvc.perform(post("/owners/1/pets").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"name\":\"Basil\",\"typeId\":1}"))
+            .andExpect(status().isServiceUnavailable());
+    }
+
     private Pet setupPet() {
         Owner owner = new Owner();
         owner.setFirstName("George");
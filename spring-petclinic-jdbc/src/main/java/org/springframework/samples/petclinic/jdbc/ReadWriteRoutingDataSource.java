@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.opencensus.stats.Measure;
+import io.opencensus.tags.TagKey;
+
+/**
+ * Sends read-only transactions round robin to the replicas and everything else to the primary. Within the
+ * staleness window after a committed write, reads go to the primary as well, so a client reading right after its
+ * POST sees its write even though the replicas lag behind.
+ * <p>
+ * The window is only known to the instance that committed the write. A client whose next read is balanced to
+ * another instance of the service can still be served by a lagging replica, so clients that must read their own
+ * writes have to stay on one instance within the window, or tolerate the replication lag.
+ * <p>
+ * Must be wrapped into a {@link LazyConnectionDataSourceProxy}: the transaction manager asks for the connection
+ * before it marks the transaction read-only.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final TagKey KEY_TARGET = TagKey.create("target");
+
+    private final Measure.MeasureLong connections = OpenCensusService.getInstance()
+        .registerCounter("datasource_connections", "Connections handed out by the read/write routing", "1", KEY_TARGET);
+
+    private final List<String> replicas = new ArrayList<>();
+
+    private final long stalenessWindowNanos;
+
+    private final LongSupplier clock;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile long lastWriteNanos;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long stalenessWindowMillis) {
+        this(primary, replicas, stalenessWindowMillis, System::nanoTime);
+    }
+
+    ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long stalenessWindowMillis, LongSupplier clock) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add("replica-" + i);
+            targets.put("replica-" + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.stalenessWindowNanos = TimeUnit.MILLISECONDS.toNanos(stalenessWindowMillis);
+        this.clock = clock;
+        this.lastWriteNanos = clock.getAsLong() - stalenessWindowNanos;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = route();
+        OpenCensusService.getInstance().record(connections, 1, KEY_TARGET, target);
+        return target;
+    }
+
+    private String route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                // the window starts over once the write is committed and on its way to the replicas
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            lastWriteNanos = clock.getAsLong();
+                        }
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || clock.getAsLong() - lastWriteNanos < stalenessWindowNanos) {
+            return PRIMARY;
+        }
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.jdbc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Builds the data sources of the services' {@code ReadWriteSplitConfig}s, which only differ in their property
+ * prefix. Locally, e.g. {@code customers.read-write-split.replicas[0].url=jdbc:hsqldb:mem:replica} with
+ * {@code initialize=true} gives a second embedded HSQLDB next to the primary one.
+ */
+public final class ReadWriteSplitDataSources {
+
+    private ReadWriteSplitDataSources() {
+    }
+
+    /**
+     * @return the {@link ReadWriteRoutingDataSource} over {@code spring.datasource} and the replicas, wrapped in
+     * the {@link LazyConnectionDataSourceProxy} it needs
+     */
+    public static DataSource create(DataSourceProperties properties, ReadWriteSplitProperties config,
+                                    ResourceLoader resourceLoader) throws IOException {
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReadWriteSplitProperties.Replica replica : config.getReplicas()) {
+            DataSource dataSource = DataSourceBuilder.create()
+                .url(replica.getUrl())
+                .username(replica.getUsername())
+                .password(replica.getPassword())
+                .build();
+            if (replica.isInitialize()) {
+                initialize(dataSource, properties, resourceLoader);
+            }
+            replicas.add(dataSource);
+        }
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+            properties.initializeDataSourceBuilder().build(), replicas, config.getStalenessWindow());
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Runs the schema and data scripts of {@code spring.datasource} on another database.
+     */
+    public static void initialize(DataSource dataSource, DataSourceProperties properties, ResourceLoader resourceLoader) throws IOException {
+        ResourcePatternResolver resolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        List<String> locations = new ArrayList<>();
+        if (properties.getSchema() != null) {
+            locations.addAll(properties.getSchema());
+        }
+        if (properties.getData() != null) {
+            locations.addAll(properties.getData());
+        }
+        for (String location : locations) {
+            populator.addScripts(resolver.getResources(location));
+        }
+        DatabasePopulatorUtils.execute(populator, dataSource);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Routing of read-only transactions to replicas of {@code spring.datasource}, bound below the prefix of a service,
+ * e.g. {@code customers.read-write-split}.
+ */
+@Data
+public class ReadWriteSplitProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Milliseconds after a write during which reads stay on the primary, must exceed the replication lag. Only
+     * reads served by the instance that wrote are held back, see {@link ReadWriteRoutingDataSource}.
+     */
+    private long stalenessWindow = 5000;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Run the schema and data scripts of {@code spring.datasource} on the replica at startup, for local
+         * embedded replicas that are not fed by replication.
+         */
+        private boolean initialize = false;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.jdbc;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ReadWriteRoutingDataSourceTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(
+        mock(DataSource.class), asList(mock(DataSource.class), mock(DataSource.class)), 1000, nanos::get);
+
+    @Before
+    public void setup() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void cleanup() {
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    public void shouldSpreadReadOnlyTransactionsOverReplicas() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo("replica-0");
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo("replica-1");
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo("replica-0");
+    }
+
+    @Test
+    public void shouldSendWritesToPrimary() {
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    public void shouldReadFromPrimaryWithinStalenessWindowAfterWrite() {
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo("replica-0");
+    }
+
+    @Test
+    public void shouldNotHoldReadsOnPrimaryAfterRollback() {
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(dataSource.determineCurrentLookupKey()).isEqualTo("replica-0");
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+}
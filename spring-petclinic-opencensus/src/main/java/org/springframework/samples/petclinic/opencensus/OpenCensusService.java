@@ -20,11 +20,13 @@ import io.opencensus.stats.Measure;
 import io.opencensus.stats.Stats;
 import io.opencensus.stats.StatsRecorder;
 import io.opencensus.stats.View;
+import io.opencensus.tags.TagContext;
 import io.opencensus.tags.TagContextBuilder;
 import io.opencensus.tags.TagKey;
 import io.opencensus.tags.TagValue;
 import io.opencensus.tags.Tagger;
 import io.opencensus.tags.Tags;
+import io.opencensus.trace.Span;
 import io.opencensus.trace.SpanContext;
 import io.opencensus.trace.Tracing;
 import io.opencensus.trace.config.TraceConfig;
@@ -43,6 +45,10 @@ public class OpenCensusService {
     // The latency in milliseconds
     private static final Measure.MeasureDouble M_LATENCY_MS = Measure.MeasureDouble.create("service_response_time", "The latency in milliseconds", "ms");
 
+    // [>=0ms, >=25ms, >=50ms, >=75ms, >=100ms, >=200ms, >=400ms, >=600ms, >=800ms, >=1s, >=2s, >=4s, >=6s]
+    private static final BucketBoundaries LATENCY_BOUNDARIES = BucketBoundaries.create(
+        Arrays.asList(0.0, 25.0, 50.0, 75.0, 100.0, 200.0, 400.0, 600.0, 800.0, 1000.0, 2000.0, 4000.0, 6000.0, 10000.0));
+
     private final TagContextTextSerializer tagContextSerializer = new TagContextTextSerializer();
 
     private final Tagger tagger = Tags.getTagger();
@@ -81,11 +87,7 @@ public class OpenCensusService {
 
     private void registerAllViews() {
         // Defining the distribution aggregations
-        Aggregation latencyDistribution = Aggregation.Distribution.create(BucketBoundaries.create(
-            Arrays.asList(
-                // [>=0ms, >=25ms, >=50ms, >=75ms, >=100ms, >=200ms, >=400ms, >=600ms, >=800ms, >=1s, >=2s, >=4s, >=6s]
-                0.0, 25.0, 50.0, 75.0, 100.0, 200.0, 400.0, 600.0, 800.0, 1000.0, 2000.0, 4000.0, 6000.0, 10000.0)
-        ));
+        Aggregation latencyDistribution = Aggregation.Distribution.create(LATENCY_BOUNDARIES);
 
         // So tagKeys
         List<TagKey> keys = new ArrayList<>();
@@ -144,15 +146,15 @@ public class OpenCensusService {
         tagContextSerializer.inject(tagger.getCurrentTagContext(),request);
     }
 
-    public Scope createSpanFromIncomingRequest(HttpServletRequest request){
+    public Span startSpanFromIncomingRequest(HttpServletRequest request){
         try {
             SpanContext spanContext = textFormat.extract(request, httpRequestGetter);
-            return tracer.spanBuilderWithRemoteParent(request.getMethod(), spanContext).startScopedSpan();
+            return tracer.spanBuilderWithRemoteParent(request.getMethod(), spanContext).startSpan();
         } catch(Exception e){
-            log.info("CreateSpanFromIncomingRequest failed");
+            log.info("StartSpanFromIncomingRequest failed");
         }
 
-        return OpenCensusService.getInstance().getTracer().spanBuilder(request.getMethod()).startScopedSpan();
+        return OpenCensusService.getInstance().getTracer().spanBuilder(request.getMethod()).startSpan();
     }
 
     public Scope createTagContextFromIncomingRequest(HttpServletRequest request){
@@ -202,6 +204,8 @@ public class OpenCensusService {
                 return "GetPetTypes";
             }else if(method.equalsIgnoreCase("GET") && this.service == "visits-service" && path.matches("/owners/.*/pets/.*/visits")){
                 return "Show Visits";
+            }else if(method.equalsIgnoreCase("GET") && this.service == "visits-service" && path.startsWith("/pets/visits")){
+                return "Show Visits";
             }else if(method.equalsIgnoreCase("POST") && this.service == "visits-service" && path.matches("/owners/.*/pets/.*/visits")) {
                 return "Add Visit";
             }else if(method.equalsIgnoreCase("GET") && this.service == "api-gateway" && path.startsWith("/index")){
@@ -218,6 +222,70 @@ public class OpenCensusService {
         statsRecorder.newMeasureMap().put(M_LATENCY_MS, durationMs).record();
     }
 
+    /**
+     * Registers a view exporting the last recorded value, e.g. a pool size or a queue depth.
+     */
+    public Measure.MeasureLong registerGauge(String name, String description, String unit, TagKey... keys){
+        Measure.MeasureLong measure = Measure.MeasureLong.create(name, description, unit);
+        registerView(name, description, measure, Aggregation.LastValue.create(), keys);
+        return measure;
+    }
+
+    /**
+     * Registers a view exporting the sum of all recorded values, e.g. cache hits.
+     */
+    public Measure.MeasureLong registerCounter(String name, String description, String unit, TagKey... keys){
+        Measure.MeasureLong measure = Measure.MeasureLong.create(name, description, unit);
+        registerView(name, description, measure, Aggregation.Sum.create(), keys);
+        return measure;
+    }
+
+    /**
+     * Registers a view exporting the distribution of recorded values, using the buckets of the response time view.
+     */
+    public Measure.MeasureDouble registerDistribution(String name, String description, String unit, TagKey... keys){
+        Measure.MeasureDouble measure = Measure.MeasureDouble.create(name, description, unit);
+        registerView(name, description, measure, Aggregation.Distribution.create(LATENCY_BOUNDARIES), keys);
+        return measure;
+    }
+
+    private void registerView(String name, String description, Measure measure, Aggregation aggregation, TagKey... keys){
+        List<TagKey> columns = new ArrayList<>(Arrays.asList(KEY_APPLICATION, KEY_SERVICE, KEY_NODE));
+        columns.addAll(Arrays.asList(keys));
+        Stats.getViewManager().registerView(View.create(View.Name.create("PetClinic/" + name), description, measure, aggregation, columns));
+    }
+
+    public void record(Measure.MeasureLong measure, long value, TagKey key, String tagValue){
+        statsRecorder.newMeasureMap().put(measure, value).record(tagsOf(key, tagValue));
+    }
+
+    public void record(Measure.MeasureLong measure, long value){
+        record(measure, value, null, null);
+    }
+
+    public void record(Measure.MeasureDouble measure, double value, TagKey key, String tagValue){
+        statsRecorder.newMeasureMap().put(measure, value).record(tagsOf(key, tagValue));
+    }
+
+    public void record(Measure.MeasureDouble measure, double value){
+        record(measure, value, null, null);
+    }
+
+    /**
+     * Values recorded outside of a request (e.g. by a background thread) carry no tag context, so the tags
+     * identifying this service are always added.
+     */
+    private TagContext tagsOf(TagKey key, String tagValue){
+        TagContextBuilder builder = tagger.currentBuilder()
+            .put(KEY_APPLICATION, TagValue.create(this.application))
+            .put(KEY_SERVICE, TagValue.create(this.service))
+            .put(KEY_NODE, TagValue.create(this.node));
+        if(key != null){
+            builder.put(key, TagValue.create(tagValue));
+        }
+        return builder.build();
+    }
+
     private static OpenCensusService instance = null;
 
     public static OpenCensusService getInstance() {
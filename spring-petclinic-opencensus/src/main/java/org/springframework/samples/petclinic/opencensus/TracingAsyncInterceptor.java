@@ -0,0 +1,22 @@
+package org.springframework.samples.petclinic.opencensus;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Counterpart of {@link TracingInterceptor} for the {@code AsyncRestTemplate}.
+ */
+public class TracingAsyncInterceptor implements AsyncClientHttpRequestInterceptor {
+
+    @Override
+    public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body, AsyncClientHttpRequestExecution execution) throws IOException {
+        OpenCensusService.getInstance().injectHttpHeaders(request);
+        return execution.executeAsync(request, body);
+    }
+
+}
@@ -6,46 +6,81 @@ import java.util.Deque;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
 import io.opencensus.common.Scope;
+import io.opencensus.tags.TagContext;
+import io.opencensus.trace.Span;
 
+/**
+ * Opens the request span and tag context for every incoming request. For asynchronous requests the
+ * scopes are detached from the servlet thread once concurrent handling starts and attached again on
+ * the async dispatch, so the span covers the whole request and ends only when the response is complete.
+ */
 @Component
 public class TracingIncomingInterceptor extends HandlerInterceptorAdapter {
 
     private final static String SCOPE_STACK = TracingIncomingInterceptor.class.getName() + ".scopeStack";
+    private final static String REQUEST_TRACE = TracingIncomingInterceptor.class.getName() + ".requestTrace";
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        Scope tagContextScope = OpenCensusService.getInstance().createTagContextFromIncomingRequest(request);
-        Scope tracingScope = OpenCensusService.getInstance().createSpanFromIncomingRequest(request);
+        Triple<TagContext,Long,Span> trace = (Triple<TagContext,Long,Span>) request.getAttribute(REQUEST_TRACE);
+        Scope tagContextScope;
+        Scope tracingScope;
+        if (trace == null) {
+            tagContextScope = OpenCensusService.getInstance().createTagContextFromIncomingRequest(request);
+            Span span = OpenCensusService.getInstance().startSpanFromIncomingRequest(request);
+            tracingScope = OpenCensusService.getInstance().getTracer().withSpan(span);
 
-        Triple<Scope,Long,Scope> scopeTriple = Triple.of(tagContextScope,System.currentTimeMillis(), tracingScope);
-        Deque<Triple<Scope,Long,Scope>> stack = getScopeStack(request);
-        stack.push(scopeTriple);
+            trace = Triple.of(OpenCensusService.getInstance().getTagger().getCurrentTagContext(), System.currentTimeMillis(), span);
+            request.setAttribute(REQUEST_TRACE, trace);
+        } else {
+            // async dispatch of a request whose handling started on another thread
+            tagContextScope = OpenCensusService.getInstance().getTagger().withTagContext(trace.getLeft());
+            tracingScope = OpenCensusService.getInstance().getTracer().withSpan(trace.getRight());
+        }
+
+        getScopeStack(request).push(Pair.of(tagContextScope, tracingScope));
         return true;
     }
 
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        super.afterConcurrentHandlingStarted(request, response, handler);
+        closeScopes(request);
+    }
+
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
         super.afterCompletion(request, response, handler, ex);
-        Deque<Triple<Scope,Long,Scope>> stack = getScopeStack(request);
-        if(!stack.isEmpty()){
-            Triple<Scope,Long,Scope> scopeTriple = stack.pop();
-            long duration = System.currentTimeMillis() - scopeTriple.getMiddle();
+        Triple<TagContext,Long,Span> trace = (Triple<TagContext,Long,Span>) request.getAttribute(REQUEST_TRACE);
+        if(trace != null){
+            request.removeAttribute(REQUEST_TRACE);
+            long duration = System.currentTimeMillis() - trace.getMiddle();
             OpenCensusService.getInstance().writeMetric(new Double(duration));
-            Scope tagContextScope = scopeTriple.getLeft();
-            Scope tracingScope = scopeTriple.getRight();
+            trace.getRight().end();
+        }
+        closeScopes(request);
+    }
+
+    private void closeScopes(HttpServletRequest request) {
+        Deque<Pair<Scope,Scope>> stack = getScopeStack(request);
+        if(!stack.isEmpty()){
+            Pair<Scope,Scope> scopes = stack.pop();
+            Scope tagContextScope = scopes.getLeft();
+            Scope tracingScope = scopes.getRight();
 
             tracingScope.close();
             tagContextScope.close();
         }
     }
 
-    private Deque<Triple<Scope,Long,Scope>> getScopeStack(HttpServletRequest request) {
-        Deque<Triple<Scope,Long,Scope>> stack = (Deque<Triple<Scope,Long,Scope>>) request.getAttribute(SCOPE_STACK);
+    private Deque<Pair<Scope,Scope>> getScopeStack(HttpServletRequest request) {
+        Deque<Pair<Scope,Scope>> stack = (Deque<Pair<Scope,Scope>>) request.getAttribute(SCOPE_STACK);
         if (stack == null) {
             stack = new ArrayDeque<>();
             request.setAttribute(SCOPE_STACK, stack);
@@ -0,0 +1,18 @@
+package org.springframework.samples.petclinic.opencensus;
+
+import org.springframework.core.task.TaskDecorator;
+
+import io.grpc.Context;
+
+/**
+ * Carries the current span and tag context of the submitting thread over to the worker thread,
+ * so that spans started by the task become children of the request span.
+ */
+public class TracingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return Context.current().wrap(runnable);
+    }
+
+}
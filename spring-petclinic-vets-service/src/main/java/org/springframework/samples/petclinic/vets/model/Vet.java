@@ -31,6 +31,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlElement;
 
 import org.hibernate.validator.constraints.NotEmpty;
@@ -67,6 +68,9 @@ public class Vet {
         inverseJoinColumns = @JoinColumn(name = "specialty_id"))
     private Set<Specialty> specialties;
 
+    @Version
+    private Integer version;
+
     public Integer getId() {
         return id;
     }
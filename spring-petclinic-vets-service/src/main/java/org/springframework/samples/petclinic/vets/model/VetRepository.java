@@ -16,6 +16,7 @@
 package org.springframework.samples.petclinic.vets.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /**
  * Repository class for <code>Vet</code> domain objects All method names are compliant with Spring Data naming
@@ -28,4 +29,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @author Maciej Szarlinski
  */
 public interface VetRepository extends JpaRepository<Vet, Integer> {
+
+    /**
+     * Revision of the list of vets, incremented by every new or updated vet.
+     */
+    @Query("SELECT COUNT(vet.id) + COALESCE(SUM(vet.version), 0) FROM Vet vet")
+    long findRevision();
 }
@@ -24,6 +24,7 @@ import org.springframework.samples.petclinic.vets.model.VetRepository;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * @author Juergen Hoeller
@@ -39,8 +40,14 @@ class VetResource {
 
     private final VetRepository vetRepository;
 
+    /**
+     * Answers 304 without loading the vets when the client has the current revision.
+     */
     @GetMapping
-    public List<Vet> showResourcesVetList() {
+    public List<Vet> showResourcesVetList(WebRequest request) {
+        if (request.checkNotModified(Long.toString(vetRepository.findRevision()))) {
+            return null;
+        }
         return vetRepository.findAll();
     }
 }
@@ -17,8 +17,10 @@ package org.springframework.samples.petclinic.visits;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -28,6 +30,7 @@ import java.net.UnknownHostException;
  */
 @EnableDiscoveryClient
 @SpringBootApplication
+@EnableConfigurationProperties(VisitsProperties.class)
 public class VisitsServiceApplication {
 
     public static void main(String[] args) throws UnknownHostException {
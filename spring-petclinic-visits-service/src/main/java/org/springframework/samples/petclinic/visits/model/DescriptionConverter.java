@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * Stores visit descriptions above a length threshold gzip compressed, as {@code {gzip}} followed by the Base64
+ * encoded bytes so the column stays a {@code VARCHAR}. Only applied when it makes the value shorter, so plain
+ * values are kept as they are and can be read whether or not compression is enabled.
+ */
+@Converter
+public class DescriptionConverter implements AttributeConverter<String, String> {
+
+    static final String PREFIX = "{gzip}";
+
+    private static volatile int compressAbove = 0;
+
+    /**
+     * Length from which descriptions are compressed on write, {@code 0} to write them as they are.
+     */
+    public static void setCompressAbove(int length) {
+        compressAbove = length;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String description) {
+        int threshold = compressAbove;
+        if (description == null || threshold <= 0 || description.length() < threshold) {
+            return description;
+        }
+        String compressed = PREFIX + Base64.getEncoder().encodeToString(gzip(description));
+        return compressed.length() < description.length() ? compressed : description;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String column) {
+        if (column == null || !column.startsWith(PREFIX)) {
+            return column;
+        }
+        try {
+            return gunzip(Base64.getDecoder().decode(column.substring(PREFIX.length())));
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            // a plain description that happens to start with the prefix
+            return column;
+        }
+    }
+
+    private static byte[] gzip(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String gunzip(byte[] compressed) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
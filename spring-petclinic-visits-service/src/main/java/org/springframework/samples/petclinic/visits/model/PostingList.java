@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.util.Arrays;
+
+/**
+ * Ascending document numbers of a term, stored as variable-length encoded gaps. Most gaps fit in one or two
+ * bytes, so a posting list takes a fraction of an {@code int[]}. Documents can only be appended in ascending
+ * order. Not thread-safe.
+ */
+class PostingList {
+
+    private byte[] bytes = new byte[4];
+
+    private int length;
+
+    private int size;
+
+    private int lastDoc = -1;
+
+    int size() {
+        return size;
+    }
+
+    int lastDoc() {
+        return lastDoc;
+    }
+
+    /**
+     * Appends the document unless it is already the last one, e.g. for a term repeated in a description.
+     */
+    void add(int doc) {
+        if (doc == lastDoc) {
+            return;
+        }
+        if (doc < lastDoc) {
+            throw new IllegalArgumentException("Document " + doc + " added after " + lastDoc);
+        }
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        }
+        int gap = doc - lastDoc;
+        while ((gap & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        bytes[length++] = (byte) gap;
+        lastDoc = doc;
+        size++;
+    }
+
+    /**
+     * Decodes the documents into {@code target} from {@code offset} on.
+     */
+    void decodeInto(int[] target, int offset) {
+        int doc = -1;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            target[offset + i] = doc;
+        }
+    }
+
+    int[] decode() {
+        int[] docs = new int[size];
+        decodeInto(docs, 0);
+        return docs;
+    }
+}
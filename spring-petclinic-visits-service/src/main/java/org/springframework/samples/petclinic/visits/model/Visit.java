@@ -18,16 +18,21 @@ package org.springframework.samples.petclinic.visits.model;
 import java.util.Date;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Version;
 import javax.validation.constraints.Size;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Simple JavaBean domain object representing a visit.
@@ -50,15 +55,31 @@ public class Visit {
 
     @Size(max = 8192)
     @Column(name = "description")
+    @Convert(converter = DescriptionConverter.class)
     private String description;
 
+    @JsonIgnore
+    @Column(name = "summary")
+    private String summary;
+
+    @JsonIgnore
+    @Column(name = "summary_truncated")
+    private Boolean summaryTruncated;
+
     @Column(name = "pet_id")
     private int petId;
 
+    @Version
+    private Integer version;
+
     public Integer getId() {
         return id;
     }
 
+    void setId(final Integer id) {
+        this.id = id;
+    }
+
     public Date getDate() {
         return date;
     }
@@ -75,4 +96,11 @@ public class Visit {
         this.petId = petId;
     }
 
+    @PrePersist
+    @PreUpdate
+    void summarize() {
+        summary = VisitPreview.summarize(description);
+        summaryTruncated = VisitPreview.isTruncatedBySummary(description);
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inserts new visits with a single JDBC batch, bypassing the persistence context, and adds them to the
+ * {@link VisitSummary} of their pets. Runs in the caller's transaction. The generated ids are set on the visits.
+ */
+@Component
+public class VisitBatchWriter {
+
+    private static final String INSERT_VISIT = "INSERT INTO visits (pet_id, visit_date, description, summary, summary_truncated, version) "
+        + "VALUES (?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final VisitSummaryWriter visitSummaryWriter;
+
+    private final DescriptionConverter descriptionConverter = new DescriptionConverter();
+
+    /**
+     * Not every driver returns the generated keys of a batch, those that don't get one insert per visit.
+     */
+    private volatile boolean batchKeysSupported = true;
+
+    @Autowired
+    public VisitBatchWriter(JdbcTemplate jdbcTemplate, VisitSummaryWriter visitSummaryWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.visitSummaryWriter = visitSummaryWriter;
+    }
+
+    /**
+     * @throws BatchKeysUnsupportedException when the driver turned out not to return the keys of the batch, the
+     *                                       transaction must be rolled back and the insert repeated
+     */
+    public void insert(List<Visit> visits) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement insertVisit = con.prepareStatement(INSERT_VISIT, Statement.RETURN_GENERATED_KEYS)) {
+                if (batchKeysSupported) {
+                    insertBatch(insertVisit, visits);
+                } else {
+                    insertOneByOne(insertVisit, visits);
+                }
+            }
+            return null;
+        });
+        visitSummaryWriter.addVisits(visits);
+    }
+
+    private void insertBatch(PreparedStatement insertVisit, List<Visit> visits) throws SQLException {
+        for (Visit visit : visits) {
+            bindVisit(insertVisit, visit);
+            insertVisit.addBatch();
+        }
+        insertVisit.executeBatch();
+        int count = 0;
+        try (ResultSet keys = insertVisit.getGeneratedKeys()) {
+            while (count < visits.size() && keys.next()) {
+                visits.get(count++).setId(keys.getInt(1));
+            }
+        }
+        if (count != visits.size()) {
+            batchKeysSupported = false;
+            throw new BatchKeysUnsupportedException();
+        }
+    }
+
+    private void insertOneByOne(PreparedStatement insertVisit, List<Visit> visits) throws SQLException {
+        for (Visit visit : visits) {
+            bindVisit(insertVisit, visit);
+            insertVisit.executeUpdate();
+            try (ResultSet keys = insertVisit.getGeneratedKeys()) {
+                keys.next();
+                visit.setId(keys.getInt(1));
+            }
+        }
+    }
+
+    private void bindVisit(PreparedStatement insertVisit, Visit visit) throws SQLException {
+        insertVisit.setInt(1, visit.getPetId());
+        insertVisit.setTimestamp(2, visit.getDate() == null ? null : new Timestamp(visit.getDate().getTime()));
+        insertVisit.setString(3, descriptionConverter.convertToDatabaseColumn(visit.getDescription()));
+        insertVisit.setString(4, VisitPreview.summarize(visit.getDescription()));
+        insertVisit.setBoolean(5, VisitPreview.isTruncatedBySummary(visit.getDescription()));
+    }
+
+    public static class BatchKeysUnsupportedException extends RuntimeException {
+    }
+}
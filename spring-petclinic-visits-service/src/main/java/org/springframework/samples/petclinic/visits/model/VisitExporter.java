@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.visits.system.StreamingJdbcTemplate;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes visits as newline-delimited JSON, in the same representation as the visit listings. The rows are read
+ * with plain JDBC from a forward-only cursor and written as they arrive, so no entities are created and memory
+ * use does not depend on the number of visits. Rows come in storage order, shard after shard.
+ */
+@Component
+public class VisitExporter {
+
+    private static final String SELECT_VISITS = "SELECT id, pet_id, visit_date, description FROM visits WHERE 1 = 1";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final VisitShards visitShards;
+
+    private final ObjectMapper objectMapper;
+
+    private final DescriptionConverter descriptionConverter = new DescriptionConverter();
+
+    @Autowired
+    public VisitExporter(DataSource dataSource, VisitShards visitShards, ObjectMapper objectMapper,
+                         VisitsProperties properties) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(
+            new StreamingJdbcTemplate(dataSource, properties.getExport().getFetchSize()));
+        this.visitShards = visitShards;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param from     first visit date to export, {@code null} for no lower bound
+     * @param to       last visit date to export, {@code null} for no upper bound
+     * @param petIds   pets whose visits to export, {@code null} for all pets
+     * @return the number of visits written
+     */
+    public long export(Date from, Date to, List<Integer> petIds, OutputStream out) throws IOException {
+        long[] count = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            visitShards.readEach(petIds, shardPetIds -> {
+                StringBuilder sql = new StringBuilder(SELECT_VISITS);
+                MapSqlParameterSource parameters = new MapSqlParameterSource();
+                if (from != null) {
+                    sql.append(" AND visit_date >= :from");
+                    parameters.addValue("from", new java.sql.Date(from.getTime()));
+                }
+                if (to != null) {
+                    sql.append(" AND visit_date <= :to");
+                    parameters.addValue("to", new java.sql.Date(to.getTime()));
+                }
+                if (shardPetIds != null) {
+                    sql.append(" AND pet_id IN (:petIds)");
+                    parameters.addValue("petIds", shardPetIds);
+                }
+                jdbcTemplate.query(sql.toString(), parameters, (RowCallbackHandler) rs -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", rs.getInt("id"));
+                        java.sql.Date date = rs.getDate("visit_date");
+                        generator.writeStringField("date", date == null ? null : date.toLocalDate().toString());
+                        generator.writeStringField("description",
+                            descriptionConverter.convertToEntityAttribute(rs.getString("description")));
+                        generator.writeNumberField("petId", rs.getInt("pet_id"));
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import lombok.Value;
+
+/**
+ * Read-only projection of a {@link Visit} for listings, carrying its summary in place of the full description.
+ * Visits stored before summaries were kept have neither a summary nor a truncation flag until they are backfilled
+ * by {@link VisitPreviewBackfill}, their previews offer the full description.
+ */
+@Value
+public class VisitPreview {
+
+    static final int SUMMARY_LENGTH = 80;
+
+    static final String ELLIPSIS = "…";
+
+    private final Integer id;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final Date date;
+
+    private final String description;
+
+    /**
+     * Whether {@link #getDescription()} leaves out part of the description of the visit.
+     */
+    private final boolean truncated;
+
+    private final int petId;
+
+    public VisitPreview(Integer id, Date date, String summary, Boolean truncated, int petId) {
+        this.id = id;
+        this.date = date;
+        this.description = summary;
+        this.truncated = truncated == null || truncated;
+        this.petId = petId;
+    }
+
+    /**
+     * The first line of the description, cut to {@value #SUMMARY_LENGTH} characters and ending with an ellipsis
+     * when anything was left out.
+     */
+    static String summarize(String description) {
+        if (description == null) {
+            return null;
+        }
+        String summary = cut(description.trim());
+        return summary.length() < description.trim().length() ? summary + ELLIPSIS : summary;
+    }
+
+    /**
+     * Whether {@link #summarize} leaves out part of the description.
+     */
+    static boolean isTruncatedBySummary(String description) {
+        return description != null && cut(description.trim()).length() < description.trim().length();
+    }
+
+    private static String cut(String description) {
+        String summary = description;
+        int lineEnd = summary.indexOf('\n');
+        if (lineEnd >= 0) {
+            summary = summary.substring(0, lineEnd).trim();
+        }
+        if (summary.length() >= SUMMARY_LENGTH) {
+            summary = summary.substring(0, SUMMARY_LENGTH - 1).trim();
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills in the summary of visits stored before summaries were kept. Runs in the background once the application
+ * is ready, one batch per shard and transaction, until no visit without a truncation flag is left. A failed run is
+ * picked up again by the next start, until then the previews of these visits offer the full description.
+ */
+@Slf4j
+@Component
+public class VisitPreviewBackfill {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String FIND_UNSUMMARIZED = "SELECT id, description FROM visits WHERE summary_truncated IS NULL";
+
+    // the previews change, so does the revision their ETags are derived from
+    private static final String UPDATE_SUMMARY = "UPDATE visits SET summary = ?, summary_truncated = ?, version = version + 1 "
+        + "WHERE id = ? AND summary_truncated IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final VisitShards visitShards;
+
+    private final DescriptionConverter descriptionConverter = new DescriptionConverter();
+
+    @Autowired
+    public VisitPreviewBackfill(DataSource dataSource, VisitShards visitShards) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setMaxRows(BATCH_SIZE);
+        this.visitShards = visitShards;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void backfillInBackground() {
+        Thread backfill = new Thread(this::backfill, "visit-preview-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * @return the number of visits whose summary was filled in
+     */
+    public int backfill() {
+        int total = 0;
+        try {
+            AtomicInteger batch = new AtomicInteger();
+            do {
+                batch.set(0);
+                visitShards.writeEach(() -> batch.addAndGet(backfillBatch()));
+                total += batch.get();
+            } while (batch.get() > 0);
+            if (total > 0) {
+                log.info("Filled in the summary of {} visits", total);
+            }
+        } catch (RuntimeException e) {
+            log.error("Filling in the visit summaries failed after {} visits", total, e);
+        }
+        return total;
+    }
+
+    private int backfillBatch() {
+        List<Object[]> summaries = jdbcTemplate.query(FIND_UNSUMMARIZED, (rs, rowNum) -> {
+            String description = descriptionConverter.convertToEntityAttribute(rs.getString("description"));
+            return new Object[]{VisitPreview.summarize(description), VisitPreview.isTruncatedBySummary(description), rs.getInt("id")};
+        });
+        if (!summaries.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SUMMARY, summaries);
+        }
+        return summaries.size();
+    }
+}
@@ -15,9 +15,14 @@
  */
 package org.springframework.samples.petclinic.visits.model;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository class for <code>Visit</code> domain objects All method names are compliant with Spring Data naming conventions so this interface can easily be extended for Spring
@@ -33,4 +38,45 @@ public interface VisitRepository extends JpaRepository<Visit, Integer> {
 
     List<Visit> findByPetId(int petId);
 
+    List<Visit> findByPetIdIn(Collection<Integer> petIds);
+
+    String VISIT_PREVIEW = "SELECT NEW org.springframework.samples.petclinic.visits.model.VisitPreview("
+        + "visit.id, visit.date, visit.summary, visit.summaryTruncated, visit.petId) FROM Visit visit ";
+
+    /**
+     * Previews of the visits of a pet, read without touching the description column.
+     */
+    @Query(VISIT_PREVIEW + "WHERE visit.petId = :petId")
+    List<VisitPreview> findPreviewsByPetId(@Param("petId") int petId);
+
+    @Query(VISIT_PREVIEW + "WHERE visit.petId IN :petIds")
+    List<VisitPreview> findPreviewsByPetIdIn(@Param("petIds") Collection<Integer> petIds);
+
+    Visit findByIdAndPetId(int id, int petId);
+
+    @Query(VISIT_PREVIEW + "WHERE visit.id IN :ids")
+    List<VisitPreview> findPreviewsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    String AFTER_CURSOR = "WHERE visit.petId = :petId AND visit.date >= :from"
+        + " AND (visit.date < :date OR (visit.date = :date AND visit.id < :id))"
+        + " ORDER BY visit.date DESC, visit.id DESC";
+
+    /**
+     * Visits of a pet from the given date on, newest first, following the visit with the given date and id. Seeks
+     * through the {@code (pet_id, visit_date)} index instead of skipping an offset.
+     */
+    @Query("SELECT visit FROM Visit visit " + AFTER_CURSOR)
+    List<Visit> findByPetIdAfter(@Param("petId") int petId, @Param("from") Date from,
+                                 @Param("date") Date date, @Param("id") int id, Pageable pageable);
+
+    @Query(VISIT_PREVIEW + AFTER_CURSOR)
+    List<VisitPreview> findPreviewsByPetIdAfter(@Param("petId") int petId, @Param("from") Date from,
+                                                @Param("date") Date date, @Param("id") int id, Pageable pageable);
+
+    /**
+     * Revision of the visits of the given pets, incremented by every new or updated visit.
+     */
+    @Query("SELECT COUNT(visit.id) + COALESCE(SUM(visit.version), 0) FROM Visit visit WHERE visit.petId IN :petIds")
+    long findRevisionByPetIdIn(@Param("petIds") Collection<Integer> petIds);
+
 }
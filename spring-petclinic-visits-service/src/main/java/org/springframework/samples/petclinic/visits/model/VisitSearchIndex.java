@@ -0,0 +1,479 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.samples.petclinic.visits.system.StreamingJdbcTemplate;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory inverted index over the visit descriptions. Every visit is a document number in the order it was
+ * indexed, every lower-cased word of its description a term with the {@link PostingList} of its documents.
+ * The terms are sorted, so a prefix query reads a contiguous range of them. A query intersects the documents of
+ * its terms and returns the newest visits first, by visit date and id. The document numbers say nothing about
+ * that order, visits are indexed shard by shard and new visits can be added while the table is loaded.
+ * <p>
+ * The index is loaded from the visits table in the background once the application is ready, and visits written
+ * afterwards are added by their writers. Visits are keyed by pet and visit id, so adding a visit twice is harmless.
+ */
+@Slf4j
+@Component
+public class VisitSearchIndex {
+
+    static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private static final int MAX_TERM_LENGTH = 40;
+
+    private static final long FIRST_RETRY_DELAY_MS = 1000;
+
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+
+    private final DocumentsByKey documentsByKey = new DocumentsByKey();
+
+    private int[] petIds = new int[1024];
+
+    private int[] visitIds = new int[1024];
+
+    /**
+     * Visit dates as days since the epoch.
+     */
+    private int[] visitDays = new int[1024];
+
+    private int documents;
+
+    private volatile boolean ready;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final VisitShards visitShards;
+
+    private final boolean enabled;
+
+    private final DescriptionConverter descriptionConverter = new DescriptionConverter();
+
+    @Autowired
+    public VisitSearchIndex(DataSource dataSource, VisitShards visitShards, VisitsProperties properties) {
+        this.jdbcTemplate = new StreamingJdbcTemplate(dataSource, properties.getSearch().getFetchSize());
+        this.visitShards = visitShards;
+        this.enabled = properties.getSearch().isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void buildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread indexer = new Thread(this::buildWithRetries, "visit-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /**
+     * Builds the index until it succeeds, backing off between the attempts so an unavailable database is not
+     * hammered. Visits loaded by a failed attempt are simply found again by the next one.
+     */
+    private void buildWithRetries() {
+        long delay = FIRST_RETRY_DELAY_MS;
+        while (!build()) {
+            log.info("Retrying to build the visit search index in {} ms", delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+        }
+    }
+
+    /**
+     * Loads the visits of every shard into the index.
+     *
+     * @return whether the index is ready
+     */
+    public boolean build() {
+        long start = System.currentTimeMillis();
+        try {
+            visitShards.readEach(null, all -> jdbcTemplate.query("SELECT id, pet_id, visit_date, description FROM visits",
+                (RowCallbackHandler) rs -> add(rs.getInt("pet_id"), rs.getInt("id"), rs.getDate("visit_date"),
+                    descriptionConverter.convertToEntityAttribute(rs.getString("description")))));
+            ready = true;
+            log.info("Indexed {} visits with {} terms in {} ms", documents, postings.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Building the visit search index failed", e);
+        }
+        return ready;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds a committed visit, does nothing when search is disabled.
+     */
+    public void add(Visit visit) {
+        if (enabled) {
+            add(visit.getPetId(), visit.getId(), visit.getDate(), visit.getDescription());
+        }
+    }
+
+    private void add(int petId, int visitId, Date date, String description) {
+        Set<String> terms = terms(description);
+        int day = date == null ? Integer.MIN_VALUE : (int) new java.sql.Date(date.getTime()).toLocalDate().toEpochDay();
+        long key = ((long) petId << 32) | (visitId & 0xFFFFFFFFL);
+        lock.writeLock().lock();
+        try {
+            if (documentsByKey.get(key) >= 0) {
+                return;
+            }
+            int document = documents++;
+            if (document == petIds.length) {
+                petIds = Arrays.copyOf(petIds, document * 2);
+                visitIds = Arrays.copyOf(visitIds, document * 2);
+                visitDays = Arrays.copyOf(visitDays, document * 2);
+            }
+            petIds[document] = petId;
+            visitIds[document] = visitId;
+            visitDays[document] = day;
+            documentsByKey.put(key, document);
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> new PostingList()).add(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the visits whose description contains every word of the query, newest first. A word ending with
+     * {@code *} matches every term starting with it.
+     *
+     * @throws InvalidQueryException when the query has no words or a prefix is too short
+     */
+    public Hits search(String query, long offset, int limit) {
+        List<Clause> clauses = parse(query);
+        lock.readLock().lock();
+        try {
+            List<int[]> matches = new ArrayList<>(clauses.size());
+            for (Clause clause : clauses) {
+                matches.add(clause.prefix ? documentsWithPrefix(clause.term) : documentsWithTerm(clause.term));
+            }
+            // the smallest lists first keep the intermediate results small
+            matches.sort(Comparator.comparingInt(match -> match.length));
+            int[] result = matches.get(0);
+            for (int i = 1; i < matches.size() && result.length > 0; i++) {
+                result = intersect(result, matches.get(i));
+            }
+
+            if (offset >= result.length) {
+                return new Hits(result.length, Collections.emptyList());
+            }
+            int end = (int) Math.min(result.length, offset + limit);
+            int[] newest = newest(result, end);
+            List<Hit> hits = new ArrayList<>(end - (int) offset);
+            for (int i = (int) offset; i < end; i++) {
+                hits.add(new Hit(petIds[newest[i]], visitIds[newest[i]]));
+            }
+            return new Hits(result.length, hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the {@code count} newest documents, newest first, with a heap holding the oldest selected one at its
+     * root, so a page costs a pass over the matches rather than sorting all of them.
+     */
+    private int[] newest(int[] matches, int count) {
+        int[] heap = new int[count];
+        if (count == 0) {
+            return heap;
+        }
+        int size = 0;
+        for (int document : matches) {
+            if (size < count) {
+                heap[size] = document;
+                siftUp(heap, size++);
+            } else if (newer(document, heap[0])) {
+                heap[0] = document;
+                siftDown(heap, 0, size);
+            }
+        }
+        // moving the oldest to the end leaves the newest first
+        for (int last = size - 1; last > 0; last--) {
+            swap(heap, 0, last);
+            siftDown(heap, 0, last);
+        }
+        return heap;
+    }
+
+    private boolean newer(int document, int other) {
+        if (visitDays[document] != visitDays[other]) {
+            return visitDays[document] > visitDays[other];
+        }
+        if (visitIds[document] != visitIds[other]) {
+            return visitIds[document] > visitIds[other];
+        }
+        return petIds[document] > petIds[other];
+    }
+
+    private void siftUp(int[] heap, int child) {
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (!newer(heap[parent], heap[child])) {
+                return;
+            }
+            swap(heap, parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int parent, int size) {
+        while (true) {
+            int oldest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && newer(heap[oldest], heap[left])) {
+                oldest = left;
+            }
+            if (right < size && newer(heap[oldest], heap[right])) {
+                oldest = right;
+            }
+            if (oldest == parent) {
+                return;
+            }
+            swap(heap, parent, oldest);
+            parent = oldest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int document = heap[i];
+        heap[i] = heap[j];
+        heap[j] = document;
+    }
+
+    private int[] documentsWithTerm(String term) {
+        PostingList documents = postings.get(term);
+        return documents == null ? new int[0] : documents.decode();
+    }
+
+    private int[] documentsWithPrefix(String prefix) {
+        NavigableMap<String, PostingList> terms = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (terms.size() == 1) {
+            return terms.values().iterator().next().decode();
+        }
+        int size = 0;
+        for (PostingList documents : terms.values()) {
+            size += documents.size();
+        }
+        int[] union = new int[size];
+        int offset = 0;
+        for (PostingList documents : terms.values()) {
+            documents.decodeInto(union, offset);
+            offset += documents.size();
+        }
+        Arrays.sort(union);
+        int distinct = 0;
+        for (int i = 0; i < union.length; i++) {
+            if (i == 0 || union[i] != union[i - 1]) {
+                union[distinct++] = union[i];
+            }
+        }
+        return Arrays.copyOf(union, distinct);
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] both = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        for (int l = 0, r = 0; l < left.length && r < right.length; ) {
+            if (left[l] < right[r]) {
+                l++;
+            } else if (left[l] > right[r]) {
+                r++;
+            } else {
+                both[size++] = left[l];
+                l++;
+                r++;
+            }
+        }
+        return Arrays.copyOf(both, size);
+    }
+
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> terms = new ArrayList<>(terms(prefix ? word.substring(0, word.length() - 1) : word));
+            for (int i = 0; i < terms.size(); i++) {
+                boolean last = i == terms.size() - 1;
+                if (prefix && last && terms.get(i).length() < MIN_PREFIX_LENGTH) {
+                    throw new InvalidQueryException("Prefix " + word + " is shorter than " + MIN_PREFIX_LENGTH + " characters");
+                }
+                clauses.add(new Clause(terms.get(i), prefix && last));
+            }
+        }
+        if (clauses.isEmpty()) {
+            throw new InvalidQueryException("Query " + query + " has no words");
+        }
+        return clauses;
+    }
+
+    /**
+     * The distinct lower-cased runs of letters and digits, in order of appearance.
+     */
+    static Set<String> terms(String text) {
+        if (text == null) {
+            return Collections.emptySet();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordCharacter = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    terms.add(lowerCase.substring(start, Math.min(i, start + MAX_TERM_LENGTH)));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    @Value
+    private static class Clause {
+        private final String term;
+        private final boolean prefix;
+    }
+
+    @Value
+    public static class Hit {
+        private final int petId;
+        private final int visitId;
+    }
+
+    @Value
+    public static class Hits {
+        private final int total;
+        private final List<Hit> hits;
+    }
+
+    public static class InvalidQueryException extends IllegalArgumentException {
+
+        public InvalidQueryException(String message) {
+            super(message);
+        }
+    }
+
+    public static class NotReadyException extends RuntimeException {
+    }
+
+    /**
+     * Open addressing map from pet and visit id to document number, without boxing a million keys.
+     */
+    private static class DocumentsByKey {
+
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newKeys(1024);
+
+        private int[] values = new int[1024];
+
+        private int size;
+
+        int get(long key) {
+            for (int slot = slot(key, keys.length); ; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                if (keys[slot] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = newKeys(oldKeys.length * 2);
+                values = new int[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != EMPTY) {
+                        insert(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            insert(key, value);
+            size++;
+        }
+
+        private void insert(long key, int value) {
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (capacity - 1);
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
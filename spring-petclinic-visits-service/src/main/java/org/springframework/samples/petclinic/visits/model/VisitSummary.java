@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of visits and last visit date of a pet, kept up to date by {@link VisitSummaryWriter} on every visit
+ * written, so it is read with a single row whatever the number of visits.
+ */
+@Entity
+@Table(name = "visit_summaries")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class VisitSummary {
+
+    @Id
+    @Column(name = "pet_id")
+    private int petId;
+
+    @Column(name = "visit_count")
+    private int visitCount;
+
+    @Column(name = "last_visit_date")
+    @Temporal(TemporalType.DATE)
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private Date lastVisitDate;
+
+    /**
+     * The summary of a pet without visits.
+     */
+    public VisitSummary(int petId) {
+        this.petId = petId;
+    }
+}
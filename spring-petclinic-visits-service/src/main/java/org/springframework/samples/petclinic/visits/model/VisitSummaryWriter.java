@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the {@link VisitSummary} rows. New visits are added to the summaries of their pets in the caller's
+ * transaction, and {@link #rebuild()} recomputes all summaries from the visits.
+ */
+@Component
+public class VisitSummaryWriter {
+
+    private static final String ADD_VISITS = "UPDATE visit_summaries SET visit_count = visit_count + ?, "
+        + "last_visit_date = CASE WHEN last_visit_date IS NULL OR last_visit_date < ? THEN ? ELSE last_visit_date END "
+        + "WHERE pet_id = ?";
+
+    private static final String INSERT_SUMMARY = "INSERT INTO visit_summaries (pet_id, visit_count, last_visit_date) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public VisitSummaryWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void addVisits(List<Visit> visits) {
+        // summaries are updated in pet id order, so concurrent writers lock their rows in the same order
+        Map<Integer, Added> addedByPet = new TreeMap<>();
+        for (Visit visit : visits) {
+            addedByPet.computeIfAbsent(visit.getPetId(), petId -> new Added()).add(visit);
+        }
+        addedByPet.forEach((petId, added) -> {
+            if (jdbcTemplate.update(ADD_VISITS, added.count, added.lastDate, added.lastDate, petId) == 0) {
+                insert(petId, added);
+            }
+        });
+    }
+
+    /**
+     * Replaces the summaries of the current database with counts over the visits table. Must run in a transaction,
+     * which keeps both tables locked until it ends, so visits written meanwhile are neither lost nor counted twice.
+     */
+    public void rebuild() {
+        lockForRebuild();
+        jdbcTemplate.update("DELETE FROM visit_summaries");
+        jdbcTemplate.update("INSERT INTO visit_summaries (pet_id, visit_count, last_visit_date) "
+            + "SELECT pet_id, COUNT(*), MAX(visit_date) FROM visits GROUP BY pet_id");
+    }
+
+    /**
+     * Locks the visits before the summaries, in the order writers touch them, so a rebuild waits for the writers
+     * in flight instead of deadlocking with them.
+     */
+    private void lockForRebuild() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        if ("MySQL".equals(database)) {
+            // InnoDB has no transactional table locks, but at REPEATABLE READ a full scan locks every row and gap
+            jdbcTemplate.query("SELECT id FROM visits LOCK IN SHARE MODE", (RowCallbackHandler) rs -> {
+            });
+            jdbcTemplate.query("SELECT pet_id FROM visit_summaries FOR UPDATE", (RowCallbackHandler) rs -> {
+            });
+        } else {
+            jdbcTemplate.execute("LOCK TABLE visits READ, visit_summaries WRITE");
+        }
+    }
+
+    private void insert(int petId, Added added) {
+        try {
+            jdbcTemplate.update(INSERT_SUMMARY, petId, added.count, added.lastDate);
+        } catch (DuplicateKeyException e) {
+            // the first visit of the pet was written concurrently
+            jdbcTemplate.update(ADD_VISITS, added.count, added.lastDate, added.lastDate, petId);
+        }
+    }
+
+    private static class Added {
+
+        private int count;
+
+        private Date lastDate;
+
+        void add(Visit visit) {
+            count++;
+            if (visit.getDate() != null && (lastDate == null || visit.getDate().after(lastDate))) {
+                lastDate = new Date(visit.getDate().getTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.visits.model.DescriptionConverter;
+
+/**
+ * Hands {@code visits.descriptions.compress-above} to the {@link DescriptionConverter}, which is instantiated by
+ * Hibernate rather than by Spring.
+ */
+@Configuration
+class DescriptionCompressionConfig {
+
+    @Autowired
+    private VisitsProperties properties;
+
+    @PostConstruct
+    void configure() {
+        DescriptionConverter.setCompressAbove(properties.getDescriptions().getCompressAbove());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.samples.petclinic.jdbc.ReadWriteSplitDataSources;
+
+/**
+ * Replaces the auto-configured {@code DataSource} with the visits shards, see {@link VisitShards}. The routing is
+ * wrapped in a {@link LazyConnectionDataSourceProxy}, so the shard is chosen at the first statement of a
+ * transaction rather than when it begins.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "visits.sharding", name = "enabled")
+class ShardingConfig {
+
+    @Bean
+    @Primary
+    DataSource dataSource(DataSourceProperties properties, VisitsProperties visitsProperties,
+                          ResourceLoader resourceLoader) throws IOException {
+        if (visitsProperties.getReadWriteSplit().isEnabled()) {
+            throw new IllegalStateException("visits.sharding and visits.read-write-split can't be enabled together");
+        }
+        List<VisitsProperties.Shard> config = visitsProperties.getSharding().getShards();
+        if (config.isEmpty()) {
+            throw new IllegalStateException("visits.sharding.shards is empty");
+        }
+
+        List<DataSource> shards = new ArrayList<>();
+        for (VisitsProperties.Shard shard : config) {
+            DataSource dataSource = DataSourceBuilder.create()
+                .url(shard.getUrl())
+                .username(shard.getUsername())
+                .password(shard.getPassword())
+                .build();
+            if (shard.isInitialize()) {
+                initialize(dataSource, shards.size(), config.size(), properties, resourceLoader);
+            }
+            shards.add(dataSource);
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private static void initialize(DataSource dataSource, int shard, int shards, DataSourceProperties properties,
+                                   ResourceLoader resourceLoader) throws IOException {
+        ReadWriteSplitDataSources.initialize(dataSource, properties, resourceLoader);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("DELETE FROM visits WHERE MOD(pet_id, ?) <> ?", shards, shard);
+        jdbcTemplate.update("DELETE FROM visit_summaries WHERE MOD(pet_id, ?) <> ?", shards, shard);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * {@code JdbcTemplate} for queries that read large result sets row by row. MySQL Connector/J ignores the fetch
+ * size and reads the whole result set into memory unless the url has {@code useCursorFetch=true}, so without it
+ * the statements are switched to its row-by-row streaming mode with a fetch size of {@code Integer.MIN_VALUE}.
+ * A streaming result set must be read to the end before the connection runs another statement.
+ */
+public class StreamingJdbcTemplate extends JdbcTemplate {
+
+    public StreamingJdbcTemplate(DataSource dataSource, int fetchSize) {
+        super(dataSource);
+        setFetchSize(fetchSize);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        DatabaseMetaData metaData = stmt.getConnection().getMetaData();
+        if ("MySQL".equals(metaData.getDatabaseProductName()) && !metaData.getURL().contains("useCursorFetch=true")) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.opencensus.TracingTaskDecorator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs visit reads and writes in a transaction on the shard of their pet. Without {@code visits.sharding} there
+ * is a single shard and the work runs in a plain transaction. Callers must not already be in a transaction, since
+ * it would keep the connection of the shard it touched first.
+ */
+@Component
+public class VisitShards {
+
+    private final int count;
+
+    private final TransactionTemplate readTemplate;
+
+    private final TransactionTemplate writeTemplate;
+
+    private final ExecutorService fanOutExecutor;
+
+    private final TracingTaskDecorator tracingTaskDecorator = new TracingTaskDecorator();
+
+    @Autowired
+    public VisitShards(VisitsProperties properties, PlatformTransactionManager transactionManager) {
+        VisitsProperties.Sharding config = properties.getSharding();
+        this.count = config.isEnabled() ? config.getShards().size() : 1;
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.fanOutExecutor = count > 1
+            ? Executors.newFixedThreadPool(count, new CustomizableThreadFactory("visits-shard-"))
+            : null;
+    }
+
+    @PreDestroy
+    void stop() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+
+    public int shardOf(int petId) {
+        return Math.floorMod(petId, count);
+    }
+
+    public <T> T read(int petId, Supplier<T> work) {
+        return inShard(shardOf(petId), readTemplate, work);
+    }
+
+    public <T> T write(int petId, Supplier<T> work) {
+        return inShard(shardOf(petId), writeTemplate, work);
+    }
+
+    /**
+     * Runs the query once per shard with the pet ids stored there, in parallel, and concatenates the results in
+     * shard order.
+     */
+    public <T> List<T> readAll(Collection<Integer> petIds, Function<List<Integer>, List<T>> query) {
+        Map<Integer, List<Integer>> petIdsByShard = byShard(petIds);
+        if (petIdsByShard.size() == 1) {
+            Map.Entry<Integer, List<Integer>> only = petIdsByShard.entrySet().iterator().next();
+            return inShard(only.getKey(), readTemplate, () -> query.apply(only.getValue()));
+        }
+
+        List<CompletableFuture<List<T>>> results = new ArrayList<>();
+        petIdsByShard.forEach((shard, ids) -> {
+            CompletableFuture<List<T>> result = new CompletableFuture<>();
+            fanOutExecutor.execute(tracingTaskDecorator.decorate(() -> {
+                try {
+                    result.complete(inShard(shard, readTemplate, () -> query.apply(ids)));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }));
+            results.add(result);
+        });
+        List<T> merged = new ArrayList<>();
+        for (CompletableFuture<List<T>> result : results) {
+            merged.addAll(result.join());
+        }
+        return merged;
+    }
+
+    /**
+     * Runs the work on one shard after the other, with the pet ids stored there. With {@code null} pet ids the work
+     * runs on every shard and is handed {@code null}.
+     */
+    public void readEach(Collection<Integer> petIds, Consumer<List<Integer>> work) {
+        if (petIds == null) {
+            eachShard(readTemplate, () -> work.accept(null));
+            return;
+        }
+        byShard(petIds).forEach((shard, ids) -> inShard(shard, readTemplate, () -> {
+            work.accept(ids);
+            return null;
+        }));
+    }
+
+    /**
+     * Runs the work in a transaction on one shard after the other.
+     */
+    public void writeEach(Runnable work) {
+        eachShard(writeTemplate, work);
+    }
+
+    private void eachShard(TransactionTemplate template, Runnable work) {
+        for (int shard = 0; shard < count; shard++) {
+            inShard(shard, template, () -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    private Map<Integer, List<Integer>> byShard(Collection<Integer> petIds) {
+        return petIds.stream().distinct().collect(groupingBy(this::shardOf, TreeMap::new, toList()));
+    }
+
+    private <T> T inShard(int shard, TransactionTemplate template, Supplier<T> work) {
+        if (count == 1) {
+            return template.execute(status -> work.get());
+        }
+        Integer previous = ShardRoutingDataSource.select(shard);
+        try {
+            return template.execute(status -> work.get());
+        } finally {
+            ShardRoutingDataSource.select(previous);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.samples.petclinic.jdbc.ReadWriteSplitProperties;
+
+/**
+ * Typesafe custom configuration.
+ */
+@Data
+@ConfigurationProperties(prefix = "visits")
+public class VisitsProperties {
+
+    private ReadWriteSplitProperties readWriteSplit = new ReadWriteSplitProperties();
+
+    private Sharding sharding = new Sharding();
+
+    private Descriptions descriptions = new Descriptions();
+
+    private Export export = new Export();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Search search = new Search();
+
+    /**
+     * Partitioning of the visits by pet id over several databases. Replaces {@code spring.datasource} and can't be
+     * combined with the read/write split.
+     */
+    @Data
+    public static class Sharding {
+
+        private boolean enabled = false;
+
+        /**
+         * The shards in a fixed order, a pet's visits are stored in shard {@code petId mod shards}. Changing the
+         * number of shards requires moving the existing visits.
+         */
+        private List<Shard> shards = new ArrayList<>();
+    }
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Run the schema and data scripts of {@code spring.datasource} on the shard at startup and keep the visits
+         * belonging to it, for local embedded shards.
+         */
+        private boolean initialize = false;
+    }
+
+    @Data
+    public static class Descriptions {
+
+        /**
+         * Length from which visit descriptions are stored gzip compressed, {@code 0} to store them as they are.
+         * Compressed descriptions are read back regardless of this setting.
+         */
+        private int compressAbove = 0;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Rows fetched from the cursor per round trip. On MySQL only with {@code useCursorFetch=true} in the url,
+         * otherwise rows are streamed one by one, see {@link StreamingJdbcTemplate}.
+         */
+        private int fetchSize = 1000;
+    }
+
+    /**
+     * Queueing of new visits in memory and inserting them in batches, one transaction per batch.
+     */
+    @Data
+    public static class WriteBehind {
+
+        private boolean enabled = false;
+
+        /**
+         * Visits waiting to be written, further visits are refused with 429.
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * Visits inserted in one JDBC batch and transaction.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Milliseconds a batch waits for more visits after its first one before it is written.
+         */
+        private long flushInterval = 20;
+
+        private Acknowledge acknowledge = Acknowledge.FLUSHED;
+
+        /**
+         * Milliseconds a request acknowledged when {@link Acknowledge#FLUSHED} waits for its batch, then it is answered
+         * with 503. The visit stays queued and may still be written.
+         */
+        private long flushTimeout = 5000;
+    }
+
+    @Data
+    public static class Search {
+
+        /**
+         * Keep the in-memory search index over the visit descriptions, which costs a few bytes per word and visit.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Rows fetched per round trip while the index is loaded, see {@link Export#fetchSize}.
+         */
+        private int fetchSize = 1000;
+    }
+
+    public enum Acknowledge {
+
+        /**
+         * Answer once the visit is queued. Queued visits are lost if the service dies.
+         */
+        QUEUED,
+
+        /**
+         * Answer once the batch holding the visit is committed.
+         */
+        FLUSHED
+    }
+}
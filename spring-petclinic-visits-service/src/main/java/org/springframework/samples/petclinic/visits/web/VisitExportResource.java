@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.visits.model.VisitExporter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Export of the visit history for analytics, one JSON visit per line. Gzip compressed when the client accepts it.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+@Slf4j
+public class VisitExportResource {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private final VisitExporter visitExporter;
+
+    @GetMapping("visits/export")
+    public void export(
+        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+        @RequestParam(value = "petId", required = false) List<Integer> petIds,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        HttpServletResponse response) throws IOException {
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        long count;
+        if (gzip) {
+            GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 8192);
+            count = visitExporter.export(from, to, petIds, out);
+            out.finish();
+        } else {
+            count = visitExporter.export(from, to, petIds, response.getOutputStream());
+        }
+        log.info("Exported {} visits", count);
+    }
+}
@@ -16,15 +16,40 @@
 package org.springframework.samples.petclinic.visits.web;
 
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitPreview;
 import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryWriter;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 
 /**
  * @author Juergen Hoeller
@@ -38,21 +63,198 @@ import java.util.List;
 @Slf4j
 public class VisitResource {
 
+    static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Bounds of an open date range, within what every database accepts as a date.
+     */
+    private static final Date FIRST_DATE = java.sql.Date.valueOf("1000-01-01");
+
+    private static final Date LAST_DATE = java.sql.Date.valueOf("9999-12-31");
+
     private final VisitRepository visitRepository;
 
+    private final VisitShards visitShards;
+
+    private final VisitWriteBehindQueue visitWriteBehindQueue;
+
+    private final VisitSummaryWriter visitSummaryWriter;
+
+    private final VisitSearchIndex visitSearchIndex;
+
     @PostMapping("owners/*/pets/{petId}/visits")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void create(
+    public ResponseEntity<Void> create(
         @Valid @RequestBody Visit visit,
-        @PathVariable("petId") int petId) {
+        @PathVariable("petId") int petId) throws InterruptedException, ExecutionException, TimeoutException {
 
         visit.setPetId(petId);
-        log.info("Saving visit {}", visit);
-        visitRepository.save(visit);
+        if (visitWriteBehindQueue.isEnabled()) {
+            CompletableFuture<Void> written = visitWriteBehindQueue.submit(visit);
+            if (visitWriteBehindQueue.isAcknowledgedWhenQueued()) {
+                return ResponseEntity.accepted().build();
+            }
+            written.get(visitWriteBehindQueue.getFlushTimeout(), TimeUnit.MILLISECONDS);
+        } else {
+            log.info("Saving visit {}", visit);
+            visitShards.write(petId, () -> {
+                visitRepository.save(visit);
+                visitSummaryWriter.addVisits(singletonList(visit));
+                return null;
+            });
+            visitSearchIndex.add(visit);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public void onQueueFull() {
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void onWriteTimeout() {
     }
 
     @GetMapping("owners/*/pets/{petId}/visits")
-    public List<Visit> visits(@PathVariable("petId") int petId) {
-        return visitRepository.findByPetId(petId);
+    public List<Visit> visits(@PathVariable("petId") int petId, WebRequest request) {
+        // the revision and the visits are read in one transaction, so from the same replica
+        return visitShards.read(petId, () -> request.checkNotModified(revision(petId)) ? null : visitRepository.findByPetId(petId));
+    }
+
+    /**
+     * Dates and summaries of the visits of a pet, for listings that show the full description on demand.
+     */
+    @GetMapping(value = "owners/*/pets/{petId}/visits", params = {"view=preview", "!size"})
+    public List<VisitPreview> visitPreviews(@PathVariable("petId") int petId, WebRequest request) {
+        return visitShards.read(petId, () -> request.checkNotModified(revision(petId)) ? null : visitRepository.findPreviewsByPetId(petId));
+    }
+
+    /**
+     * Read a page of the visits of a pet, newest first, optionally only those between the given dates. The next page
+     * starts after the visit encoded in the cursor of the previous one.
+     */
+    @GetMapping(value = "owners/*/pets/{petId}/visits", params = "size")
+    public VisitPage<?> visitPage(@PathVariable("petId") int petId,
+                                  @RequestParam("size") int size,
+                                  @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "view", required = false) String view) {
+        final int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // one more than requested tells whether there is a next page
+        final PageRequest limit = new PageRequest(0, pageSize + 1);
+        final Date since = from != null ? from : FIRST_DATE;
+
+        // the first page starts after a visit following all visits of the last day
+        Date afterDate = to != null ? to : LAST_DATE;
+        int afterId = Integer.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                final String[] after = new String(Base64.getUrlDecoder().decode(cursor), UTF_8).split(":", 2);
+                if (after.length != 2) {
+                    throw new InvalidCursorException(cursor);
+                }
+                afterDate = new Date(Long.parseLong(after[0]));
+                afterId = Integer.parseInt(after[1]);
+            } catch (IllegalArgumentException e) {
+                // not Base64 or not numbers
+                throw new InvalidCursorException(cursor);
+            }
+        }
+        final Date date = afterDate;
+        final int id = afterId;
+
+        if ("preview".equals(view)) {
+            return page(visitShards.read(petId, () -> visitRepository.findPreviewsByPetIdAfter(petId, since, date, id, limit)),
+                pageSize, VisitPreview::getDate, VisitPreview::getId);
+        }
+        return page(visitShards.read(petId, () -> visitRepository.findByPetIdAfter(petId, since, date, id, limit)),
+            pageSize, Visit::getDate, Visit::getId);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void onInvalidCursor() {
+    }
+
+    @GetMapping(value = "owners/*/pets/{petId}/visits/{visitId}/description", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> description(@PathVariable("petId") int petId, @PathVariable("visitId") int visitId) {
+        Visit visit = visitShards.read(petId, () -> visitRepository.findByIdAndPetId(visitId, petId));
+        if (visit == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(visit.getDescription());
+    }
+
+    @GetMapping("pets/visits")
+    public Visits<Visit> visitsMultiGet(@RequestParam("petId") List<Integer> petIds, WebRequest request,
+                                        HttpServletResponse response) {
+        return readIfModified(petIds, visitRepository::findByPetIdIn, request, response);
+    }
+
+    @GetMapping(value = "pets/visits", params = "view=preview")
+    public Visits<VisitPreview> visitPreviewsMultiGet(@RequestParam("petId") List<Integer> petIds, WebRequest request,
+                                                      HttpServletResponse response) {
+        return readIfModified(petIds, visitRepository::findPreviewsByPetIdIn, request, response);
+    }
+
+    /**
+     * Answers 304 when the visits are unchanged. Otherwise each shard reads the visits together with their revision
+     * in one transaction, and the ETag is replaced by that revision, so it describes the visits sent even when the
+     * first revision came from another replica.
+     */
+    private <T> Visits<T> readIfModified(List<Integer> petIds, Function<List<Integer>, List<T>> query,
+                                         WebRequest request, HttpServletResponse response) {
+        if (request.checkNotModified(revision(petIds))) {
+            return null;
+        }
+        final List<ShardVisits<T>> shards = visitShards.readAll(petIds,
+            ids -> singletonList(new ShardVisits<>(visitRepository.findRevisionByPetIdIn(ids), query.apply(ids))));
+        response.setHeader(HttpHeaders.ETAG, '"' + Long.toString(shards.stream().mapToLong(ShardVisits::getRevision).sum()) + '"');
+        return new Visits<>(shards.stream().flatMap(shard -> shard.getItems().stream()).collect(toList()));
+    }
+
+    private static <T> VisitPage<T> page(List<T> visits, int pageSize, Function<T, Date> date, Function<T, Integer> id) {
+        if (visits.size() <= pageSize) {
+            return new VisitPage<>(visits, null);
+        }
+        final T last = visits.get(pageSize - 1);
+        final String nextCursor = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((date.apply(last).getTime() + ":" + id.apply(last)).getBytes(UTF_8));
+        return new VisitPage<>(new ArrayList<>(visits.subList(0, pageSize)), nextCursor);
+    }
+
+    private String revision(int petId) {
+        return Long.toString(visitRepository.findRevisionByPetIdIn(singletonList(petId)));
+    }
+
+    private String revision(List<Integer> petIds) {
+        return Long.toString(visitShards.readAll(petIds, ids -> singletonList(visitRepository.findRevisionByPetIdIn(ids)))
+            .stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Value
+    static class Visits<T> {
+        private final List<T> items;
+    }
+
+    @Value
+    static class VisitPage<T> {
+        private final List<T> items;
+        private final String nextCursor;
+    }
+
+    @Value
+    private static class ShardVisits<T> {
+        private final long revision;
+        private final List<T> items;
+    }
+
+    public static class InvalidCursorException extends RuntimeException {
+
+        public InvalidCursorException(String cursor) {
+            super("Invalid cursor " + cursor);
+        }
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.visits.model.VisitPreview;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Search of the visit descriptions, answered from the {@link VisitSearchIndex}. Only the previews of the page
+ * returned are read from the database.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class VisitSearchResource {
+
+    private final VisitSearchIndex visitSearchIndex;
+
+    private final VisitRepository visitRepository;
+
+    private final VisitShards visitShards;
+
+    /**
+     * Visits whose description contains all words of the query, newest first. {@code fever cough*} finds visits
+     * mentioning fever and a word starting with cough.
+     */
+    @GetMapping("visits/search")
+    public SearchPage search(@RequestParam("q") String query,
+                             @RequestParam(value = "page", defaultValue = "0") int page,
+                             @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (!visitSearchIndex.isReady()) {
+            throw new VisitSearchIndex.NotReadyException();
+        }
+        final int pageSize = Math.max(1, Math.min(size, VisitResource.MAX_PAGE_SIZE));
+        final int pageNumber = Math.max(0, page);
+        // a long offset, a page far past the hits is empty rather than a negative offset
+        final VisitSearchIndex.Hits hits = visitSearchIndex.search(query, (long) pageNumber * pageSize, pageSize);
+
+        final Map<Integer, Set<Integer>> visitIdsByPet = hits.getHits().stream()
+            .collect(groupingBy(VisitSearchIndex.Hit::getPetId, mapping(VisitSearchIndex.Hit::getVisitId, toSet())));
+        final Map<VisitSearchIndex.Hit, VisitPreview> previews = visitShards.readAll(visitIdsByPet.keySet(), petIds ->
+            visitRepository.findPreviewsByIdIn(petIds.stream().flatMap(petId -> visitIdsByPet.get(petId).stream()).collect(toList()))
+                .stream()
+                // visit ids are only unique within a shard
+                .filter(preview -> petIds.contains(preview.getPetId()) && visitIdsByPet.get(preview.getPetId()).contains(preview.getId()))
+                .collect(toList()))
+            .stream()
+            .collect(toMap(preview -> new VisitSearchIndex.Hit(preview.getPetId(), preview.getId()), Function.identity()));
+
+        final List<VisitPreview> items = hits.getHits().stream()
+            .map(previews::get)
+            .filter(Objects::nonNull)
+            .collect(toList());
+        return new SearchPage(items, hits.getTotal(), pageNumber);
+    }
+
+    @ExceptionHandler(VisitSearchIndex.InvalidQueryException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void onInvalidQuery() {
+    }
+
+    @ExceptionHandler(VisitSearchIndex.NotReadyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void onIndexNotReady() {
+    }
+
+    @Value
+    static class SearchPage {
+        private final List<VisitPreview> items;
+        private final int total;
+        private final int page;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.visits.model.VisitSummary;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryWriter;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Number of visits and last visit date per pet, without loading the visits.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+@Slf4j
+public class VisitSummaryResource {
+
+    private final VisitSummaryRepository visitSummaryRepository;
+
+    private final VisitSummaryWriter visitSummaryWriter;
+
+    private final VisitShards visitShards;
+
+    /**
+     * The summaries of the given pets in the requested order, pets without visits included.
+     */
+    @GetMapping("pets/visits/summaries")
+    public VisitSummaries summaries(@RequestParam("petId") List<Integer> petIds) {
+        Map<Integer, VisitSummary> summaries = visitShards.readAll(petIds, visitSummaryRepository::findByPetIdIn)
+            .stream()
+            .collect(toMap(VisitSummary::getPetId, Function.identity()));
+        return new VisitSummaries(petIds.stream()
+            .distinct()
+            .map(petId -> summaries.getOrDefault(petId, new VisitSummary(petId)))
+            .collect(toList()));
+    }
+
+    /**
+     * Recomputes all summaries from the visits, e.g. after visits were changed outside this service.
+     */
+    @PostMapping("pets/visits/summaries/rebuild")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void rebuild() {
+        visitShards.writeEach(visitSummaryWriter::rebuild);
+        log.info("Rebuilt visit summaries");
+    }
+
+    @Value
+    static class VisitSummaries {
+        private final List<VisitSummary> items;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.samples.petclinic.opencensus.OpenCensusService;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitBatchWriter;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
+import org.springframework.stereotype.Component;
+
+import io.opencensus.stats.Measure;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind for new visits with {@code visits.write-behind.enabled}. Visits are queued in memory and a single
+ * writer thread inserts them in JDBC batches, once a batch is full or its flush interval has passed, so many
+ * visits share one transaction and commit. A visit that finds the queue full is refused instead of waiting.
+ */
+@Slf4j
+@Component
+class VisitWriteBehindQueue {
+
+    private final Measure.MeasureLong queueDepth = OpenCensusService.getInstance()
+        .registerGauge("visit_write_queue_depth", "Visits waiting to be written", "1");
+
+    private final Measure.MeasureLong rejections = OpenCensusService.getInstance()
+        .registerCounter("visit_write_rejections", "Visits refused because the write queue was full", "1");
+
+    private final Measure.MeasureDouble batchSize = OpenCensusService.getInstance()
+        .registerDistribution("visit_write_batch_size", "Visits inserted per batch", "1");
+
+    private final Measure.MeasureDouble flushLatency = OpenCensusService.getInstance()
+        .registerDistribution("visit_write_flush_latency", "Time from queueing the first visit of a batch until it was committed", "ms");
+
+    private final VisitBatchWriter visitBatchWriter;
+
+    private final VisitShards visitShards;
+
+    private final VisitSearchIndex visitSearchIndex;
+
+    private final VisitsProperties.WriteBehind config;
+
+    private final BlockingQueue<PendingVisit> queue;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @Autowired
+    VisitWriteBehindQueue(VisitBatchWriter visitBatchWriter, VisitShards visitShards, VisitSearchIndex visitSearchIndex,
+                          VisitsProperties properties) {
+        this.visitBatchWriter = visitBatchWriter;
+        this.visitShards = visitShards;
+        this.visitSearchIndex = visitSearchIndex;
+        this.config = properties.getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeBatches, "visit-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer != null) {
+            running = false;
+            writer.join();
+        }
+    }
+
+    boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    boolean isAcknowledgedWhenQueued() {
+        return config.getAcknowledge() == VisitsProperties.Acknowledge.QUEUED;
+    }
+
+    long getFlushTimeout() {
+        return config.getFlushTimeout();
+    }
+
+    /**
+     * @return completes once the batch holding the visit is committed
+     * @throws TaskRejectedException when the queue is full
+     */
+    CompletableFuture<Void> submit(final Visit visit) {
+        final PendingVisit pending = new PendingVisit(visit, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            OpenCensusService.getInstance().record(rejections, 1);
+            throw new TaskRejectedException("Visit write queue is full");
+        }
+        OpenCensusService.getInstance().record(queueDepth, queue.size());
+        return pending.written;
+    }
+
+    private void writeBatches() {
+        final List<PendingVisit> batch = new ArrayList<>(config.getBatchSize());
+        // after stop() the loop keeps going until the queue is drained
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(final List<PendingVisit> batch) throws InterruptedException {
+        final PendingVisit first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        final long deadline = first.queuedNanos + TimeUnit.MILLISECONDS.toNanos(config.getFlushInterval());
+        while (batch.size() < config.getBatchSize()) {
+            if (queue.drainTo(batch, config.getBatchSize() - batch.size()) > 0) {
+                continue;
+            }
+            final PendingVisit next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(final List<PendingVisit> batch) {
+        OpenCensusService.getInstance().record(queueDepth, queue.size());
+        batch.stream()
+            .collect(groupingBy(pending -> visitShards.shardOf(pending.visit.getPetId()), toList()))
+            .values()
+            .forEach(this::writeShard);
+        OpenCensusService.getInstance().record(batchSize, batch.size());
+        OpenCensusService.getInstance().record(flushLatency, (System.nanoTime() - batch.get(0).queuedNanos) / 1e6);
+    }
+
+    private void writeShard(final List<PendingVisit> batch) {
+        final List<Visit> visits = batch.stream().map(pending -> pending.visit).collect(toList());
+        try {
+            try {
+                insert(visits);
+            } catch (VisitBatchWriter.BatchKeysUnsupportedException e) {
+                log.info("JDBC driver does not return generated keys of batches, inserting visits one by one");
+                insert(visits);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() > 1) {
+                // the batch was rolled back, write each visit on its own so one bad visit doesn't fail the others
+                log.warn("Writing {} visits failed, retrying them one by one", visits.size(), e);
+                batch.forEach(pending -> writeShard(singletonList(pending)));
+            } else {
+                log.error("Writing visit {} failed", visits.get(0), e);
+                batch.get(0).written.completeExceptionally(e);
+            }
+            return;
+        }
+        visits.forEach(visitSearchIndex::add);
+        batch.forEach(pending -> pending.written.complete(null));
+    }
+
+    private void insert(final List<Visit> visits) {
+        visitShards.write(visits.get(0).getPetId(), () -> {
+            visitBatchWriter.insert(visits);
+            return null;
+        });
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingVisit {
+        private final Visit visit;
+        private final long queuedNanos;
+        private final CompletableFuture<Void> written;
+    }
+}
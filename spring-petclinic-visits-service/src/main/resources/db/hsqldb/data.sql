@@ -1,4 +1,7 @@
-INSERT INTO visits VALUES (1, 7, '2013-01-01', 'rabies shot');
-INSERT INTO visits VALUES (2, 8, '2013-01-02', 'rabies shot');
-INSERT INTO visits VALUES (3, 8, '2013-01-03', 'neutered');
-INSERT INTO visits VALUES (4, 7, '2013-01-04', 'spayed');
+INSERT INTO visits VALUES (1, 7, '2013-01-01', 'rabies shot', 0, 'rabies shot', FALSE);
+INSERT INTO visits VALUES (2, 8, '2013-01-02', 'rabies shot', 0, 'rabies shot', FALSE);
+INSERT INTO visits VALUES (3, 8, '2013-01-03', 'neutered', 0, 'neutered', FALSE);
+INSERT INTO visits VALUES (4, 7, '2013-01-04', 'spayed', 0, 'spayed', FALSE);
+
+INSERT INTO visit_summaries VALUES (7, 2, '2013-01-04');
+INSERT INTO visit_summaries VALUES (8, 2, '2013-01-03');
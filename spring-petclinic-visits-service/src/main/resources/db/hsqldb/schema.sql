@@ -1,10 +1,20 @@
+DROP TABLE visit_summaries IF EXISTS;
 DROP TABLE visits IF EXISTS;
 
 CREATE TABLE visits (
   id          INTEGER IDENTITY PRIMARY KEY,
   pet_id      INTEGER NOT NULL,
   visit_date  DATE,
-  description VARCHAR(8192)
+  description VARCHAR(8192),
+  version     INTEGER DEFAULT 0 NOT NULL,
+  summary     VARCHAR(80),
+  summary_truncated BOOLEAN
 );
 
-CREATE INDEX visits_pet_id ON visits (pet_id);
+CREATE INDEX visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+CREATE TABLE visit_summaries (
+  pet_id          INTEGER PRIMARY KEY,
+  visit_count     INTEGER NOT NULL,
+  last_visit_date DATE
+);
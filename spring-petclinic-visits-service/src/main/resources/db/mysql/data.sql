@@ -1,4 +1,7 @@
-INSERT IGNORE INTO visits VALUES (1, 7, '2010-03-04', 'rabies shot');
-INSERT IGNORE INTO visits VALUES (2, 8, '2011-03-04', 'rabies shot');
-INSERT IGNORE INTO visits VALUES (3, 8, '2009-06-04', 'neutered');
-INSERT IGNORE INTO visits VALUES (4, 7, '2008-09-04', 'spayed');
+INSERT IGNORE INTO visits VALUES (1, 7, '2010-03-04', 'rabies shot', 0, 'rabies shot', FALSE);
+INSERT IGNORE INTO visits VALUES (2, 8, '2011-03-04', 'rabies shot', 0, 'rabies shot', FALSE);
+INSERT IGNORE INTO visits VALUES (3, 8, '2009-06-04', 'neutered', 0, 'neutered', FALSE);
+INSERT IGNORE INTO visits VALUES (4, 7, '2008-09-04', 'spayed', 0, 'spayed', FALSE);
+
+INSERT IGNORE INTO visit_summaries VALUES (7, 2, '2010-03-04');
+INSERT IGNORE INTO visit_summaries VALUES (8, 2, '2011-03-04');
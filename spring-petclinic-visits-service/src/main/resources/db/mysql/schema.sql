@@ -8,5 +8,42 @@ CREATE TABLE IF NOT EXISTS visits (
   pet_id INT(4) UNSIGNED NOT NULL,
   visit_date DATE,
   description VARCHAR(8192),
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
+  summary VARCHAR(80),
+  summary_truncated BOOLEAN,
+  INDEX visits_pet_id_visit_date (pet_id, visit_date),
+  FOREIGN KEY (pet_id) REFERENCES pets(id)
+) engine=InnoDB;
+
+-- columns added since the visits table was first created, CREATE TABLE IF NOT EXISTS leaves existing tables alone
+SET @add_column = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE visits ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'visits' AND column_name = 'version');
+PREPARE add_column FROM @add_column;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+SET @add_column = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE visits ADD COLUMN summary VARCHAR(80)', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'visits' AND column_name = 'summary');
+PREPARE add_column FROM @add_column;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+SET @add_column = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE visits ADD COLUMN summary_truncated BOOLEAN', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'visits' AND column_name = 'summary_truncated');
+PREPARE add_column FROM @add_column;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+-- likewise for the index of the visit pages
+SET @add_index = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX visits_pet_id_visit_date ON visits (pet_id, visit_date)', 'DO 0')
+  FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'visits' AND index_name = 'visits_pet_id_visit_date');
+PREPARE add_index FROM @add_index;
+EXECUTE add_index;
+DEALLOCATE PREPARE add_index;
+
+CREATE TABLE IF NOT EXISTS visit_summaries (
+  pet_id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
+  visit_count INT(4) UNSIGNED NOT NULL,
+  last_visit_date DATE,
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
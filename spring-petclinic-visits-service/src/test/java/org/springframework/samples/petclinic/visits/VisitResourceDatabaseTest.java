@@ -15,17 +15,40 @@
  */
 package org.springframework.samples.petclinic.visits;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.visits.model.DescriptionConverter;
 import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitPreview;
+import org.springframework.samples.petclinic.visits.model.VisitPreviewBackfill;
 import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSummary;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryWriter;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.nCopies;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 /**
  * @author Maciej Szarlinski
@@ -38,9 +61,114 @@ public class VisitResourceDatabaseTest {
     @Autowired
     private VisitRepository visitRepository;
 
+    @Autowired
+    private VisitSummaryRepository visitSummaryRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     public void shouldGetAListOfVetsInJSonFormat() throws Exception {
         Visit vet = visitRepository.findOne(1);
         assertThat(visitRepository.findAll()).contains(vet);
     }
+
+    @Test
+    public void shouldFindVisitsOfSeveralPetsAtOnce() throws Exception {
+        assertThat(visitRepository.findByPetIdIn(asList(7, 8)))
+            .extracting(Visit::getPetId)
+            .containsOnly(7, 8)
+            .hasSize(4);
+    }
+
+    @Test
+    public void shouldPageThroughVisitsNewestFirst() throws Exception {
+        Date first = java.sql.Date.valueOf("2000-01-01");
+        List<Visit> page = visitRepository.findByPetIdAfter(8, first, java.sql.Date.valueOf("2013-12-31"), Integer.MAX_VALUE, new PageRequest(0, 1));
+        assertThat(page).extracting(Visit::getId).containsExactly(3);
+
+        Visit last = page.get(0);
+        assertThat(visitRepository.findPreviewsByPetIdAfter(8, first, last.getDate(), last.getId(), new PageRequest(0, 2)))
+            .extracting(VisitPreview::getId).containsExactly(2);
+        assertThat(visitRepository.findByPetIdAfter(8, java.sql.Date.valueOf("2013-01-03"), last.getDate(), Integer.MAX_VALUE, new PageRequest(0, 2)))
+            .extracting(Visit::getId).containsExactly(3);
+    }
+
+    @Test
+    public void shouldStoreLongDescriptionsCompressedAndListTheirSummary() throws Exception {
+        String description = "Annual check-up\n" + String.join(" ", nCopies(200, "weight and teeth fine"));
+        Visit visit = new Visit();
+        visit.setPetId(9);
+        ReflectionTestUtils.setField(visit, "description", description);
+
+        DescriptionConverter.setCompressAbove(512);
+        try {
+            entityManager.persistAndFlush(visit);
+        } finally {
+            DescriptionConverter.setCompressAbove(0);
+        }
+        entityManager.clear();
+
+        String stored = jdbcTemplate.queryForObject("SELECT description FROM visits WHERE id = ?", String.class, visit.getId());
+        assertThat(stored).startsWith("{gzip}");
+        assertThat(stored.length()).isLessThan(description.length() / 10);
+        assertThat(visitRepository.findByIdAndPetId(visit.getId(), 9).getDescription()).isEqualTo(description);
+        assertThat(visitRepository.findPreviewsByPetId(9))
+            .extracting(VisitPreview::getDescription, VisitPreview::isTruncated)
+            .containsExactly(tuple("Annual check-up…", true));
+    }
+
+    @Test
+    public void shouldBackfillTheSummaryOfVisitsStoredWithoutOne() throws Exception {
+        String insertWithoutSummary = "INSERT INTO visits (id, pet_id, visit_date, description) VALUES (?, ?, ?, ?)";
+        jdbcTemplate.update(insertWithoutSummary, 20, 9, java.sql.Date.valueOf("2014-01-01"), "sneezing\nno fever");
+        jdbcTemplate.update(insertWithoutSummary, 21, 9, java.sql.Date.valueOf("2014-01-02"), "follow-up…");
+        assertThat(visitRepository.findPreviewsByPetId(9))
+            .extracting(VisitPreview::getDescription, VisitPreview::isTruncated)
+            .containsOnly(tuple(null, true));
+
+        long revision = visitRepository.findRevisionByPetIdIn(singletonList(9));
+        VisitPreviewBackfill backfill = new VisitPreviewBackfill(dataSource, new VisitShards(new VisitsProperties(), transactionManager));
+
+        assertThat(backfill.backfill()).isEqualTo(2);
+        assertThat(visitRepository.findPreviewsByPetId(9))
+            .extracting(VisitPreview::getId, VisitPreview::getDescription, VisitPreview::isTruncated)
+            .containsOnly(tuple(20, "sneezing…", true), tuple(21, "follow-up…", false));
+        assertThat(visitRepository.findRevisionByPetIdIn(singletonList(9))).isGreaterThan(revision);
+        assertThat(backfill.backfill()).isZero();
+    }
+
+    @Test
+    public void shouldKeepVisitSummariesUpToDateAndRebuildThem() throws Exception {
+        VisitSummaryWriter visitSummaryWriter = new VisitSummaryWriter(jdbcTemplate);
+        Visit lateVisit = new Visit();
+        lateVisit.setPetId(7);
+        ReflectionTestUtils.setField(lateVisit, "date", new SimpleDateFormat("yyyy-MM-dd").parse("2014-02-03"));
+        Visit firstVisit = new Visit();
+        firstVisit.setPetId(9);
+        visitRepository.save(asList(lateVisit, firstVisit));
+        visitSummaryWriter.addVisits(singletonList(lateVisit));
+        visitSummaryWriter.addVisits(singletonList(firstVisit));
+
+        assertThat(visitSummaryRepository.findByPetIdIn(asList(7, 8, 9)))
+            .extracting(VisitSummary::getPetId, VisitSummary::getVisitCount)
+            .containsOnly(tuple(7, 3), tuple(8, 2), tuple(9, 1));
+        assertThat(visitSummaryRepository.findOne(7).getLastVisitDate()).hasSameTimeAs("2014-02-03");
+
+        jdbcTemplate.update("UPDATE visit_summaries SET visit_count = 0");
+        visitSummaryWriter.rebuild();
+        entityManager.clear();
+        assertThat(visitSummaryRepository.findByPetIdIn(asList(7, 8, 9)))
+            .extracting(VisitSummary::getPetId, VisitSummary::getVisitCount)
+            .containsOnly(tuple(7, 3), tuple(8, 2), tuple(9, 1));
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class VisitBatchWriterTest {
+
+    private final PreparedStatement insertVisit = mock(PreparedStatement.class);
+
+    private final ResultSet keys = mock(ResultSet.class);
+
+    private final VisitSummaryWriter visitSummaryWriter = mock(VisitSummaryWriter.class);
+
+    private VisitBatchWriter writer;
+
+    @Before
+    public void setUp() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), anyInt())).thenReturn(insertVisit);
+        when(insertVisit.getGeneratedKeys()).thenReturn(keys);
+        writer = new VisitBatchWriter(new JdbcTemplate(dataSource), visitSummaryWriter);
+    }
+
+    @Test
+    public void shouldSetTheGeneratedIdsOfTheBatch() throws SQLException {
+        when(keys.next()).thenReturn(true, true, false);
+        when(keys.getInt(1)).thenReturn(11, 12);
+        List<Visit> visits = asList(visit(7), visit(8));
+
+        writer.insert(visits);
+
+        assertThat(visits).extracting(Visit::getId).containsExactly(11, 12);
+        verify(insertVisit).executeBatch();
+        verify(insertVisit, never()).executeUpdate();
+        verify(visitSummaryWriter).addVisits(visits);
+    }
+
+    @Test
+    public void shouldInsertOneByOneOnceTheDriverReturnedNoBatchKeys() throws SQLException {
+        when(keys.next()).thenReturn(false, true, true);
+        when(keys.getInt(1)).thenReturn(11, 12);
+        List<Visit> visits = asList(visit(7), visit(8));
+
+        assertThatThrownBy(() -> writer.insert(visits)).isInstanceOf(VisitBatchWriter.BatchKeysUnsupportedException.class);
+        verify(visitSummaryWriter, never()).addVisits(anyListOf(Visit.class));
+
+        writer.insert(visits);
+
+        assertThat(visits).extracting(Visit::getId).containsExactly(11, 12);
+        verify(insertVisit, times(1)).executeBatch();
+        verify(insertVisit, times(2)).executeUpdate();
+        verify(visitSummaryWriter).addVisits(visits);
+    }
+
+    private static Visit visit(int petId) {
+        Visit visit = new Visit();
+        visit.setPetId(petId);
+        ReflectionTestUtils.setField(visit, "description", "Rabies shot");
+        return visit;
+    }
+}
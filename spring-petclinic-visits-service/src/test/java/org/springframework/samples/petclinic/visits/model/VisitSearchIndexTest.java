@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class VisitSearchIndexTest {
+
+    private VisitSearchIndex index;
+
+    @Before
+    public void setUp() {
+        VisitsProperties properties = new VisitsProperties();
+        index = new VisitSearchIndex(mock(DataSource.class),
+            new VisitShards(properties, mock(PlatformTransactionManager.class)), properties);
+        index.add(visit(7, 1, "Rabies shot, mild fever"));
+        index.add(visit(8, 2, "Fever and coughing at night"));
+        index.add(visit(8, 3, "Coughs, fever again. Fever-reducer prescribed"));
+        index.add(visit(7, 4, "Spayed"));
+    }
+
+    @Test
+    public void shouldFindVisitsWithAllTermsNewestFirst() {
+        assertThat(index.search("fever", 0, 10).getHits())
+            .extracting(VisitSearchIndex.Hit::getVisitId).containsExactly(3, 2, 1);
+        assertThat(index.search("FEVER cough*", 0, 10).getHits())
+            .extracting(VisitSearchIndex.Hit::getVisitId).containsExactly(3, 2);
+        assertThat(index.search("fever spayed", 0, 10).getTotal()).isZero();
+        assertThat(index.search("unknown", 0, 10).getTotal()).isZero();
+    }
+
+    @Test
+    public void shouldPageThroughHits() {
+        VisitSearchIndex.Hits secondPage = index.search("fever", 2, 2);
+
+        assertThat(secondPage.getTotal()).isEqualTo(3);
+        assertThat(secondPage.getHits()).containsExactly(new VisitSearchIndex.Hit(7, 1));
+        assertThat(index.search("fever", 200_000_000L * 20, 20).getHits()).isEmpty();
+    }
+
+    @Test
+    public void shouldIndexEveryVisitOnce() {
+        index.add(visit(8, 2, "Fever and coughing at night"));
+
+        assertThat(index.search("night", 0, 10).getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRefuseShortPrefixes() {
+        assertThatThrownBy(() -> index.search("f*", 0, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search(" , ", 0, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldEncodeLargeGaps() {
+        PostingList documents = new PostingList();
+        documents.add(0);
+        documents.add(127);
+        documents.add(128);
+        documents.add(1_000_000);
+        documents.add(Integer.MAX_VALUE);
+
+        assertThat(documents.decode()).containsExactly(0, 127, 128, 1_000_000, Integer.MAX_VALUE);
+    }
+
+    private static Visit visit(int petId, int id, String description) {
+        Visit visit = new Visit();
+        visit.setPetId(petId);
+        visit.setId(id);
+        ReflectionTestUtils.setField(visit, "description", description);
+        return visit;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ShardedVisitSearchIndexTest {
+
+    private EmbeddedDatabase even;
+
+    private EmbeddedDatabase odd;
+
+    private VisitShards visitShards;
+
+    private VisitSearchIndex index;
+
+    @Before
+    public void setUp() {
+        even = shard("even");
+        odd = shard("odd");
+        insert(even, 2, 1, "2013-01-01");
+        insert(even, 2, 2, "2013-01-03");
+        insert(odd, 1, 1, "2013-01-02");
+        insert(odd, 1, 3, "2013-01-04");
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(asList(even, odd));
+        routing.afterPropertiesSet();
+        VisitsProperties properties = new VisitsProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getSharding().setShards(asList(new VisitsProperties.Shard(), new VisitsProperties.Shard()));
+        visitShards = new VisitShards(properties, new DataSourceTransactionManager(routing));
+        index = new VisitSearchIndex(routing, visitShards, properties);
+    }
+
+    @After
+    public void tearDown() {
+        visitShards.stop();
+        even.shutdown();
+        odd.shutdown();
+    }
+
+    @Test
+    public void shouldOrderHitsByVisitDateAcrossShards() {
+        // written while the index was loading, so it has the lowest document number
+        insert(even, 2, 4, "2013-01-05");
+        index.add(visit(2, 4, "2013-01-05"));
+        index.build();
+
+        assertThat(index.search("fever", 0, 10).getHits()).containsExactly(
+            new VisitSearchIndex.Hit(2, 4),
+            new VisitSearchIndex.Hit(1, 3),
+            new VisitSearchIndex.Hit(2, 2),
+            new VisitSearchIndex.Hit(1, 1),
+            new VisitSearchIndex.Hit(2, 1));
+        assertThat(index.search("fever", 1, 2).getHits()).containsExactly(
+            new VisitSearchIndex.Hit(1, 3),
+            new VisitSearchIndex.Hit(2, 2));
+    }
+
+    private static EmbeddedDatabase shard(String name) {
+        return new EmbeddedDatabaseBuilder().setName(name).addScript("db/hsqldb/schema.sql").build();
+    }
+
+    private static void insert(EmbeddedDatabase shard, int petId, int id, String date) {
+        new JdbcTemplate(shard).update("INSERT INTO visits (id, pet_id, visit_date, description) VALUES (?, ?, ?, ?)",
+            id, petId, Date.valueOf(date), "Fever");
+    }
+
+    private static Visit visit(int petId, int id, String date) {
+        Visit visit = new Visit();
+        visit.setPetId(petId);
+        ReflectionTestUtils.setField(visit, "id", id);
+        ReflectionTestUtils.setField(visit, "date", Date.valueOf(date));
+        ReflectionTestUtils.setField(visit, "description", "Fever");
+        return visit;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.system;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class VisitShardsTest {
+
+    private final ShardRoutingDataSource routing = new ShardRoutingDataSource(asList(null, null, null));
+
+    private VisitShards visitShards;
+
+    @Before
+    public void setUp() {
+        VisitsProperties properties = new VisitsProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getSharding().setShards(asList(
+            new VisitsProperties.Shard(), new VisitsProperties.Shard(), new VisitsProperties.Shard()));
+        visitShards = new VisitShards(properties, mock(PlatformTransactionManager.class));
+    }
+
+    @After
+    public void tearDown() {
+        visitShards.stop();
+    }
+
+    @Test
+    public void shouldRunWorkOnTheShardOfThePet() {
+        assertThat(visitShards.shardOf(7)).isEqualTo(1);
+        assertThat(visitShards.read(7, routing::determineCurrentLookupKey)).isEqualTo(1);
+        assertThat(visitShards.write(9, routing::determineCurrentLookupKey)).isEqualTo(0);
+        assertThat(routing.determineCurrentLookupKey()).isNull();
+    }
+
+    @Test
+    public void shouldFailTransactionsWithoutShard() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(routing::determineCurrentLookupKey).isInstanceOf(IllegalStateException.class);
+            assertThat(visitShards.read(7, routing::determineCurrentLookupKey)).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    public void shouldQueryEachShardWithItsPets() {
+        List<String> results = visitShards.readAll(asList(1, 2, 3, 4, 5, 6, 4), petIds -> singletonList(
+            routing.determineCurrentLookupKey() + ":" + petIds.stream().map(String::valueOf).collect(Collectors.joining(","))));
+
+        assertThat(results).containsExactly("0:3,6", "1:1,4", "2:2,5");
+    }
+}
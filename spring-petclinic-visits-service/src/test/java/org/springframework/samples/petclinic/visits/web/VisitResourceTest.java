@@ -0,0 +1,161 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static java.util.Arrays.asList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitPreview;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.model.VisitSummaryWriter;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(VisitResource.class)
+@Import(VisitShards.class)
+@ActiveProfiles("test")
+public class VisitResourceTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private VisitRepository visitRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private VisitWriteBehindQueue visitWriteBehindQueue;
+
+    @MockBean
+    private VisitSummaryWriter visitSummaryWriter;
+
+    @MockBean
+    private VisitSearchIndex visitSearchIndex;
+
+    @Test
+    public void shouldFetchVisitsOfSeveralPets() throws Exception {
+        given(visitRepository.findByPetIdIn(asList(111, 222)))
+            .willReturn(asList(visit(111), visit(222), visit(222)));
+
+        mvc.perform(get("/pets/visits?petId=111,222"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].petId").value(111))
+            .andExpect(jsonPath("$.items[1].petId").value(222))
+            .andExpect(jsonPath("$.items[2].petId").value(222));
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedWhenVisitsAreUnchanged() throws Exception {
+        given(visitRepository.findRevisionByPetIdIn(asList(111, 222))).willReturn(3L);
+
+        mvc.perform(get("/pets/visits?petId=111,222").header("If-None-Match", "\"3\""))
+            .andExpect(status().isNotModified());
+        verify(visitRepository, never()).findByPetIdIn(anyCollectionOf(Integer.class));
+
+        mvc.perform(get("/pets/visits?petId=111,222").header("If-None-Match", "\"2\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"3\""));
+    }
+
+    @Test
+    public void shouldListVisitPreviewsWithoutTheirDescriptions() throws Exception {
+        given(visitRepository.findPreviewsByPetId(7))
+            .willReturn(asList(new VisitPreview(1, new Date(), "rabies shot", false, 7), new VisitPreview(2, new Date(), "spayed…", true, 7)));
+
+        mvc.perform(get("/owners/1/pets/7/visits?view=preview"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].description").value("rabies shot"))
+            .andExpect(jsonPath("$[0].truncated").value(false))
+            .andExpect(jsonPath("$[1].truncated").value(true));
+        verify(visitRepository, never()).findByPetId(7);
+    }
+
+    @Test
+    public void shouldAcceptQueuedVisitsAndRefuseThemWhenTheQueueIsFull() throws Exception {
+        given(visitWriteBehindQueue.isEnabled()).willReturn(true);
+        given(visitWriteBehindQueue.isAcknowledgedWhenQueued()).willReturn(true);
+        given(visitWriteBehindQueue.submit(any(Visit.class)))
+            .willReturn(new CompletableFuture<>())
+            .willThrow(new TaskRejectedException("Visit write queue is full"));
+
+        mvc.perform(post("/owners/1/pets/7/visits").contentType(MediaType.APPLICATION_JSON).content("{\"description\":\"rabies shot\"}"))
+            .andExpect(status().isAccepted());
+        mvc.perform(post("/owners/1/pets/7/visits").contentType(MediaType.APPLICATION_JSON).content("{\"description\":\"rabies shot\"}"))
+            .andExpect(status().isTooManyRequests());
+        verify(visitRepository, never()).save(any(Visit.class));
+    }
+
+    @Test
+    public void shouldAnswerServiceUnavailableWhenTheBatchIsNotWrittenInTime() throws Exception {
+        given(visitWriteBehindQueue.isEnabled()).willReturn(true);
+        given(visitWriteBehindQueue.getFlushTimeout()).willReturn(10L);
+        given(visitWriteBehindQueue.submit(any(Visit.class))).willReturn(new CompletableFuture<>());
+
+        mvc.perform(post("/owners/1/pets/7/visits").contentType(MediaType.APPLICATION_JSON).content("{\"description\":\"rabies shot\"}"))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void shouldRejectInvalidCursors() throws Exception {
+        for (String cursor : asList("not base64!", base64("1234"), base64("1234:x"))) {
+            mvc.perform(get("/owners/1/pets/7/visits").param("size", "10").param("cursor", cursor))
+                .andExpect(status().isBadRequest());
+        }
+        verify(visitRepository, never()).findByPetIdAfter(anyInt(), any(Date.class), any(Date.class), anyInt(), any(Pageable.class));
+    }
+
+    private static String base64(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Visit visit(int petId) {
+        Visit visit = new Visit();
+        visit.setPetId(petId);
+        return visit;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.visits.model.VisitPreview;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(VisitSearchResource.class)
+@Import(VisitShards.class)
+@ActiveProfiles("test")
+public class VisitSearchResourceTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private VisitSearchIndex visitSearchIndex;
+
+    @MockBean
+    private VisitRepository visitRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void shouldReturnThePreviewsOfThePageInHitOrder() throws Exception {
+        given(visitSearchIndex.isReady()).willReturn(true);
+        given(visitSearchIndex.search("fever", 20, 10)).willReturn(new VisitSearchIndex.Hits(25,
+            asList(new VisitSearchIndex.Hit(8, 3), new VisitSearchIndex.Hit(7, 1))));
+        given(visitRepository.findPreviewsByIdIn(anyCollectionOf(Integer.class))).willReturn(asList(
+            new VisitPreview(1, new Date(), "fever", false, 7),
+            new VisitPreview(3, new Date(), "fever again", false, 8),
+            new VisitPreview(3, new Date(), "spayed", false, 7)));
+
+        mvc.perform(get("/visits/search?q=fever&page=2&size=10"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(25))
+            .andExpect(jsonPath("$.page").value(2))
+            .andExpect(jsonPath("$.items.length()").value(2))
+            .andExpect(jsonPath("$.items[0].petId").value(8))
+            .andExpect(jsonPath("$.items[0].id").value(3))
+            .andExpect(jsonPath("$.items[1].petId").value(7))
+            .andExpect(jsonPath("$.items[1].id").value(1));
+    }
+
+    @Test
+    public void shouldReturnAnEmptyPageFarPastTheHits() throws Exception {
+        given(visitSearchIndex.isReady()).willReturn(true);
+        given(visitSearchIndex.search("fever", 4_000_000_000L, 20)).willReturn(new VisitSearchIndex.Hits(25, emptyList()));
+
+        mvc.perform(get("/visits/search?q=fever&page=200000000&size=20"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(25))
+            .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    @Test
+    public void shouldRejectInvalidQueries() throws Exception {
+        given(visitSearchIndex.isReady()).willReturn(true);
+        given(visitSearchIndex.search(anyString(), anyLong(), anyInt()))
+            .willThrow(new VisitSearchIndex.InvalidQueryException("Prefix f* is shorter than 2 characters"));
+
+        mvc.perform(get("/visits/search?q=f*"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldAnswerServiceUnavailableWhileTheIndexIsBuilt() throws Exception {
+        given(visitSearchIndex.isReady()).willReturn(false);
+
+        mvc.perform(get("/visits/search?q=fever"))
+            .andExpect(status().isServiceUnavailable());
+        verify(visitSearchIndex, never()).search(anyString(), anyLong(), anyInt());
+    }
+}
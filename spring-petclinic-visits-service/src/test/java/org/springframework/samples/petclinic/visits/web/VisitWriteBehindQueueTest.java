@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitBatchWriter;
+import org.springframework.samples.petclinic.visits.model.VisitSearchIndex;
+import org.springframework.samples.petclinic.visits.system.VisitShards;
+import org.springframework.samples.petclinic.visits.system.VisitsProperties;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class VisitWriteBehindQueueTest {
+
+    private final VisitBatchWriter visitBatchWriter = mock(VisitBatchWriter.class);
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch writerBlocked = new CountDownLatch(1);
+
+    private final CountDownLatch releaseWriter = new CountDownLatch(1);
+
+    private VisitWriteBehindQueue queue;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        releaseWriter.countDown();
+        queue.stop();
+    }
+
+    @Test
+    public void shouldWriteQueuedVisitsInBatchesAndRefuseThemWhenFull() throws Exception {
+        VisitsProperties properties = new VisitsProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setQueueCapacity(5);
+        properties.getWriteBehind().setBatchSize(3);
+        doAnswer(invocation -> {
+            batchSizes.add(((List<?>) invocation.getArguments()[0]).size());
+            writerBlocked.countDown();
+            releaseWriter.await();
+            return null;
+        }).when(visitBatchWriter).insert(anyListOf(Visit.class));
+        queue = new VisitWriteBehindQueue(visitBatchWriter,
+            new VisitShards(properties, mock(PlatformTransactionManager.class)), mock(VisitSearchIndex.class), properties);
+        queue.start();
+
+        CompletableFuture<Void> first = queue.submit(visit());
+        assertThat(writerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<?>[] queued = new CompletableFuture<?>[5];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = queue.submit(visit());
+        }
+        assertThatThrownBy(() -> queue.submit(visit())).isInstanceOf(TaskRejectedException.class);
+
+        releaseWriter.countDown();
+        CompletableFuture.allOf(queued).get(5, TimeUnit.SECONDS);
+        assertThat(first).isDone();
+        assertThat(batchSizes).containsExactly(1, 3, 2);
+    }
+
+    @Test
+    public void shouldRetryAFailedBatchOneVisitAtATime() throws Exception {
+        VisitsProperties properties = new VisitsProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setBatchSize(3);
+        properties.getWriteBehind().setFlushInterval(1000);
+        Visit bad = visit();
+        doAnswer(invocation -> {
+            List<?> visits = (List<?>) invocation.getArguments()[0];
+            batchSizes.add(visits.size());
+            if (visits.stream().anyMatch(visit -> visit == bad)) {
+                throw new DataIntegrityViolationException("Description too long");
+            }
+            return null;
+        }).when(visitBatchWriter).insert(anyListOf(Visit.class));
+        queue = new VisitWriteBehindQueue(visitBatchWriter,
+            new VisitShards(properties, mock(PlatformTransactionManager.class)), mock(VisitSearchIndex.class), properties);
+        queue.start();
+
+        CompletableFuture<Void> before = queue.submit(visit());
+        CompletableFuture<Void> failing = queue.submit(bad);
+        CompletableFuture<Void> after = queue.submit(visit());
+
+        before.get(5, TimeUnit.SECONDS);
+        after.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(DataIntegrityViolationException.class);
+        assertThat(batchSizes).containsExactly(3, 1, 1, 1);
+    }
+
+    private static Visit visit() {
+        Visit visit = new Visit();
+        visit.setPetId(7);
+        return visit;
+    }
+}